@@ -0,0 +1,594 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.codegen;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+import one.utopic.sparse.ebml.EBMLCode;
+import one.utopic.sparse.ebml.EBMLFormat;
+import one.utopic.sparse.ebml.codec.EBMLCodec;
+import one.utopic.sparse.ebml.codec.EBMLField;
+import one.utopic.sparse.ebml.format.BytesFormat;
+import one.utopic.sparse.ebml.format.UTF8StringFormat;
+
+/**
+ * Generates an EBMLFormat for each {@link EBMLCodec} class. Generated formats
+ * dispatch child elements with a switch over their ids, read primitives
+ * directly from the buffer, skip unknown elements and write without building
+ * writer frames.
+ */
+@SupportedAnnotationTypes("one.utopic.sparse.ebml.codec.EBMLCodec")
+public class EBMLCodecProcessor extends AbstractProcessor {
+
+    public static final String SUFFIX = "EBMLFormat";
+
+    private static final long MAX_ID = 0xFFFFFFFFL;
+
+    private static enum Kind {
+        LONG, INT, BOOLEAN, DOUBLE, FLOAT, OBJECT;
+    }
+
+    private static final class Mapping {
+
+        final String name;
+        final String constant;
+        final long id;
+        final int idLength;
+        final Kind kind;
+        final boolean nullable;
+        final String type;
+        final String getter;
+        final String setter;
+        final String format;
+        final String formatClass;
+
+        Mapping(String name, String constant, long id, Kind kind, boolean nullable, String type, String getter, String setter,
+                String format, String formatClass) {
+            this.name = name;
+            this.constant = constant;
+            this.id = id;
+            this.idLength = (Long.SIZE - Long.numberOfLeadingZeros(id) + Byte.SIZE - 1) / Byte.SIZE;
+            this.kind = kind;
+            this.nullable = nullable;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+            this.format = format;
+            this.formatClass = formatClass;
+        }
+
+        String idConstant() {
+            return constant + "_ID";
+        }
+
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(EBMLCodec.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@EBMLCodec is applicable to classes only");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            List<Mapping> mappings = getMappings(type);
+            if (mappings != null) {
+                try {
+                    writeFormat(type, mappings);
+                } catch (IOException e) {
+                    error(type, "Failed to write format source: " + e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return simple name of the format generated for the class
+     */
+    public static String getFormatName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element e = type.getEnclosingElement(); e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            name.insert(0, '_').insert(0, e.getSimpleName());
+        }
+        return name.append(SUFFIX).toString();
+    }
+
+    private List<Mapping> getMappings(TypeElement type) {
+        boolean valid = true;
+        if (type.getModifiers().contains(Modifier.PRIVATE) || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            valid = error(type, "@EBMLCodec class should not be private or abstract");
+        }
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL
+                && (type.getNestingKind() != NestingKind.MEMBER || !type.getModifiers().contains(Modifier.STATIC))) {
+            valid = error(type, "@EBMLCodec class should be top level or static member class");
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            valid = error(type, "@EBMLCodec class should not be generic");
+        }
+        boolean constructor = false;
+        for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            constructor |= c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE);
+        }
+        if (!constructor) {
+            valid = error(type, "@EBMLCodec class should have non-private no-arg constructor");
+        }
+        List<Mapping> mappings = new ArrayList<Mapping>();
+        Set<Long> ids = new HashSet<Long>();
+        Set<String> constants = new HashSet<String>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            EBMLField annotation = field.getAnnotation(EBMLField.class);
+            if (annotation == null) {
+                continue;
+            }
+            // fields differing in case only get distinct constant names
+            String name = field.getSimpleName().toString().toUpperCase(Locale.ROOT);
+            String constant = name;
+            for (int i = 1; !constants.add(constant); i++) {
+                constant = name + "_" + i;
+            }
+            Mapping mapping = getMapping(type, field, annotation, constant);
+            if (mapping == null) {
+                valid = false;
+            } else if (!ids.add(mapping.id)) {
+                valid = error(field, "Element id 0x" + Long.toHexString(mapping.id).toUpperCase(Locale.ROOT) + " is already mapped");
+            } else {
+                mappings.add(mapping);
+            }
+        }
+        return valid ? mappings : null;
+    }
+
+    private Mapping getMapping(TypeElement type, VariableElement field, EBMLField annotation, String constant) {
+        String name = field.getSimpleName().toString();
+        if (field.getModifiers().contains(Modifier.STATIC)) {
+            error(field, "@EBMLField should not be static");
+            return null;
+        }
+        long id = annotation.id();
+        try {
+            if (id > MAX_ID) {
+                throw new IllegalArgumentException("Element id should not be longer than 4 bytes");
+            }
+            new EBMLCode(id);
+        } catch (IllegalArgumentException e) {
+            error(field, e.getMessage());
+            return null;
+        }
+        TypeMirror fieldType = field.asType();
+        String getter;
+        String setter;
+        if (field.getModifiers().contains(Modifier.PRIVATE)) {
+            String property = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            ExecutableElement get = findMethod(type, "get" + property, null);
+            if (get == null && fieldType.getKind() == TypeKind.BOOLEAN) {
+                get = findMethod(type, "is" + property, null);
+            }
+            ExecutableElement set = findMethod(type, "set" + property, fieldType);
+            if (get == null || set == null) {
+                error(field, "Private @EBMLField should have non-private getter and setter");
+                return null;
+            }
+            getter = "data." + get.getSimpleName() + "()";
+            setter = "result." + set.getSimpleName() + "(%s)";
+        } else if (field.getModifiers().contains(Modifier.FINAL)) {
+            error(field, "@EBMLField should not be final");
+            return null;
+        } else {
+            getter = "data." + name;
+            setter = "result." + name + " = %s";
+        }
+        boolean nullable = !fieldType.getKind().isPrimitive();
+        TypeMirror formatType = getFormatType(annotation);
+        if (formatType != null) {
+            if (!checkFormat(type, field, formatType)) {
+                return null;
+            }
+            return new Mapping(name, constant, id, Kind.OBJECT, nullable, fieldType.toString(), getter, setter, constant + "_FORMAT",
+                    formatType.toString());
+        }
+        Kind kind = null;
+        String format = null;
+        switch (fieldType.getKind()) {
+        case LONG:
+            kind = Kind.LONG;
+            break;
+        case INT:
+            kind = Kind.INT;
+            break;
+        case BOOLEAN:
+            kind = Kind.BOOLEAN;
+            break;
+        case DOUBLE:
+            kind = Kind.DOUBLE;
+            break;
+        case FLOAT:
+            kind = Kind.FLOAT;
+            break;
+        case ARRAY:
+            if (((ArrayType) fieldType).getComponentType().getKind() == TypeKind.BYTE) {
+                kind = Kind.OBJECT;
+                format = BytesFormat.class.getName() + ".INSTANCE";
+            }
+            break;
+        case DECLARED:
+            TypeElement element = (TypeElement) ((DeclaredType) fieldType).asElement();
+            String typeName = element.getQualifiedName().toString();
+            if (Long.class.getName().equals(typeName)) {
+                kind = Kind.LONG;
+            } else if (Integer.class.getName().equals(typeName)) {
+                kind = Kind.INT;
+            } else if (Boolean.class.getName().equals(typeName)) {
+                kind = Kind.BOOLEAN;
+            } else if (Double.class.getName().equals(typeName)) {
+                kind = Kind.DOUBLE;
+            } else if (Float.class.getName().equals(typeName)) {
+                kind = Kind.FLOAT;
+            } else if (String.class.getName().equals(typeName)) {
+                kind = Kind.OBJECT;
+                format = UTF8StringFormat.class.getName() + ".INSTANCE";
+            } else if (element.getAnnotation(EBMLCodec.class) != null) {
+                kind = Kind.OBJECT;
+                PackageElement pkg = processingEnv.getElementUtils().getPackageOf(element);
+                format = (pkg.isUnnamed() ? "" : pkg.getQualifiedName() + ".") + getFormatName(element) + ".INSTANCE";
+            }
+            break;
+        default:
+            break;
+        }
+        if (kind == null) {
+            error(field, "Type " + fieldType + " has no default mapping, format should be specified");
+            return null;
+        }
+        return new Mapping(name, constant, id, kind, nullable, fieldType.toString(), getter, setter, format, null);
+    }
+
+    private ExecutableElement findMethod(TypeElement type, String name, TypeMirror parameter) {
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (!method.getSimpleName().contentEquals(name) || method.getModifiers().contains(Modifier.PRIVATE)
+                    || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            if (parameter == null ? method.getParameters().isEmpty()
+                    : method.getParameters().size() == 1
+                            && processingEnv.getTypeUtils().isSameType(parameter, method.getParameters().get(0).asType())) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private TypeMirror getFormatType(EBMLField annotation) {
+        TypeMirror formatType;
+        try {
+            formatType = processingEnv.getElementUtils().getTypeElement(annotation.format().getCanonicalName()).asType();
+        } catch (MirroredTypeException e) {
+            formatType = e.getTypeMirror();
+        }
+        TypeElement element = (TypeElement) processingEnv.getTypeUtils().asElement(formatType);
+        return element.getQualifiedName().contentEquals(EBMLFormat.class.getName()) ? null : formatType;
+    }
+
+    /**
+     * Checks that generated code is able to instantiate the format and pass
+     * field values through it
+     */
+    private boolean checkFormat(TypeElement type, VariableElement field, TypeMirror formatType) {
+        Types types = processingEnv.getTypeUtils();
+        Elements elements = processingEnv.getElementUtils();
+        TypeElement format = (TypeElement) types.asElement(formatType);
+        if (format.getKind() != ElementKind.CLASS || format.getModifiers().contains(Modifier.ABSTRACT)) {
+            return error(field, "Format " + formatType + " should be a concrete class");
+        }
+        if (!format.getTypeParameters().isEmpty()) {
+            return error(field, "Format " + formatType + " should not be generic");
+        }
+        if (!isAccessible(type, format)) {
+            return error(field, "Format " + formatType + " is not accessible from " + type.getQualifiedName());
+        }
+        boolean constructor = false;
+        for (ExecutableElement c : ElementFilter.constructorsIn(format.getEnclosedElements())) {
+            constructor |= c.getParameters().isEmpty() && isAccessible(type, c);
+        }
+        if (!constructor) {
+            return error(field, "Format " + formatType + " should have accessible no-arg constructor");
+        }
+        TypeMirror valueType = getFormatArgument(formatType, types.erasure(elements.getTypeElement(EBMLFormat.class.getName()).asType()));
+        if (valueType == null) {
+            return error(field, "Format " + formatType + " should implement " + EBMLFormat.class.getName() + " with type argument");
+        }
+        TypeMirror fieldType = field.asType();
+        if (!types.isAssignable(valueType, fieldType) || !types.isAssignable(fieldType, valueType)) {
+            return error(field, "Format " + formatType + " of " + valueType + " does not match field type " + fieldType);
+        }
+        return true;
+    }
+
+    private TypeMirror getFormatArgument(TypeMirror type, TypeMirror formatErasure) {
+        Types types = processingEnv.getTypeUtils();
+        for (TypeMirror supertype : types.directSupertypes(type)) {
+            if (types.isSameType(types.erasure(supertype), formatErasure)) {
+                List<? extends TypeMirror> arguments = ((DeclaredType) supertype).getTypeArguments();
+                return arguments.isEmpty() ? null : arguments.get(0);
+            }
+            TypeMirror argument = getFormatArgument(supertype, formatErasure);
+            if (argument != null) {
+                return argument;
+            }
+        }
+        return null;
+    }
+
+    private boolean isAccessible(TypeElement from, Element element) {
+        Set<Modifier> modifiers = element.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        if (!modifiers.contains(Modifier.PUBLIC)) {
+            Elements elements = processingEnv.getElementUtils();
+            if (!elements.getPackageOf(from).equals(elements.getPackageOf(element))) {
+                return false;
+            }
+        }
+        Element enclosing = element.getEnclosingElement();
+        if (element.getKind() == ElementKind.CLASS && enclosing.getKind() != ElementKind.PACKAGE) {
+            return modifiers.contains(Modifier.STATIC) && isAccessible(from, enclosing);
+        }
+        return true;
+    }
+
+    private void writeFormat(TypeElement type, List<Mapping> mappings) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String name = getFormatName(type);
+        String qualifiedName = pkg.isUnnamed() ? name : pkg.getQualifiedName() + "." + name;
+        String typeName = type.getQualifiedName().toString();
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter())) {
+            if (!pkg.isUnnamed()) {
+                out.println("package " + pkg.getQualifiedName() + ";");
+                out.println();
+            }
+            out.println("import java.io.IOException;");
+            out.println("import java.nio.ByteBuffer;");
+            out.println();
+            out.println("import one.utopic.abio.api.output.Output;");
+            out.println("import one.utopic.sparse.ebml.EBMLFormat;");
+            out.println("import one.utopic.sparse.ebml.EBMLFormatUtil;");
+            out.println();
+            out.println("/**");
+            out.println(" * Generated by " + getClass().getSimpleName() + " for {@link " + typeName + "}");
+            out.println(" */");
+            out.println("public final class " + name + " implements EBMLFormat<" + typeName + "> {");
+            out.println();
+            out.println("    public static final " + name + " INSTANCE = new " + name + "();");
+            out.println();
+            for (Mapping m : mappings) {
+                if (m.idLength > 1) {
+                    out.println("    private static final byte[] " + m.idConstant() + " = { " + idBytes(m) + " };");
+                }
+                if (m.formatClass != null) {
+                    out.println("    private static final " + m.formatClass + " " + m.format + " = new " + m.formatClass + "();");
+                }
+            }
+            out.println();
+            out.println("    @Override");
+            out.println("    public String toString() {");
+            out.println("        return getClass().getSimpleName();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + typeName + " readFormat(byte[] data) {");
+            out.println("        return readFormat(ByteBuffer.wrap(data));");
+            out.println("    }");
+            out.println();
+            writeRead(out, typeName, mappings);
+            out.println();
+            writeWrite(out, typeName, mappings);
+            out.println("}");
+        }
+    }
+
+    private static void writeRead(PrintWriter out, String typeName, List<Mapping> mappings) {
+        out.println("    @Override");
+        out.println("    public " + typeName + " readFormat(ByteBuffer data) {");
+        out.println("        " + typeName + " result = new " + typeName + "();");
+        out.println("        int limit = data.limit();");
+        out.println("        for (int p = data.position(); p < limit;) {");
+        out.println("            long id = EBMLFormatUtil.readVint(data, p, false);");
+        out.println("            p += EBMLFormatUtil.vintSize(data, p);");
+        out.println("            long size = EBMLFormatUtil.readVint(data, p, true);");
+        out.println("            p += EBMLFormatUtil.vintSize(data, p);");
+        out.println("            if (size < 0 || size > limit - p) {");
+        out.println("                throw new IllegalArgumentException(\"Element [\" + Long.toHexString(id) + \"] size \" + size");
+        out.println("                        + \" exceeds " + typeName + " data\");");
+        out.println("            }");
+        out.println("            int length = (int) size;");
+        out.println("            switch (id >>> 32 == 0 ? (int) id : 0) {");
+        for (Mapping m : mappings) {
+            out.println("            case 0x" + Long.toHexString(m.id).toUpperCase(Locale.ROOT) + ":");
+            out.println("                " + String.format(m.setter, readExpression(m)) + ";");
+            out.println("                break;");
+        }
+        out.println("            default:");
+        out.println("                // unknown element is skipped");
+        out.println("                break;");
+        out.println("            }");
+        out.println("            p += length;");
+        out.println("        }");
+        out.println("        return result;");
+        out.println("    }");
+    }
+
+    private static String readExpression(Mapping m) {
+        String signed = "EBMLFormatUtil.readSigned(data, p, length)";
+        switch (m.kind) {
+        case LONG:
+            return signed;
+        case INT:
+            return "Math.toIntExact(" + signed + ")";
+        case BOOLEAN:
+            return signed + " != 0";
+        case DOUBLE:
+            return "EBMLFormatUtil.readBinaryFloat(" + signed + ", length)";
+        case FLOAT:
+            return "(float) EBMLFormatUtil.readBinaryFloat(" + signed + ", length)";
+        default:
+            return m.format + ".readFormat(EBMLFormatUtil.slice(data, p, length))";
+        }
+    }
+
+    private static void writeWrite(PrintWriter out, String typeName, List<Mapping> mappings) {
+        out.println("    @Override");
+        out.println("    public Writable getWritable(" + typeName + " data) {");
+        for (int i = 0; i < mappings.size(); i++) {
+            Mapping m = mappings.get(i);
+            String value = m.getter;
+            if (m.nullable) {
+                out.println("        final " + m.type + " f" + i + " = " + m.getter + ";");
+                value = "f" + i;
+            }
+            String present = "null != f" + i;
+            switch (m.kind) {
+            case LONG:
+            case INT:
+                out.println("        final long v" + i + " = " + (m.nullable ? present + " ? " + value + " : 0L" : value) + ";");
+                out.println("        final int s" + i + " = EBMLFormatUtil.signedLength(v" + i + ");");
+                break;
+            case BOOLEAN:
+                out.println("        final long v" + i + " = " + (m.nullable ? present + " && " : "") + value + " ? 1L : 0L;");
+                out.println("        final int s" + i + " = EBMLFormatUtil.signedLength(v" + i + ");");
+                break;
+            case DOUBLE:
+                out.println("        final long v" + i + " = "
+                        + (m.nullable ? present + " ? Double.doubleToRawLongBits(" + value + ") : 0L" : "Double.doubleToRawLongBits(" + value + ")")
+                        + ";");
+                out.println("        final int s" + i + " = Double.BYTES;");
+                break;
+            case FLOAT:
+                out.println("        final long v" + i + " = "
+                        + (m.nullable ? present + " ? Float.floatToRawIntBits(" + value + ") : 0L" : "Float.floatToRawIntBits(" + value + ")")
+                        + ";");
+                out.println("        final int s" + i + " = Float.BYTES;");
+                break;
+            default:
+                String writable = m.format + ".getWritable(" + value + ")";
+                out.println("        final Writable w" + i + " = " + (m.nullable ? present + " ? " + writable + " : null" : writable) + ";");
+                out.println("        final long s" + i + " = " + (m.nullable ? present + " ? w" + i + ".getSize() : 0L" : "w" + i + ".getSize()") + ";");
+                break;
+            }
+        }
+        out.println("        long size = 0;");
+        for (int i = 0; i < mappings.size(); i++) {
+            Mapping m = mappings.get(i);
+            String statement = "size += " + m.idLength + " + EBMLFormatUtil.vintLength(s" + i + ") + s" + i + ";";
+            if (m.nullable) {
+                out.println("        if (null != f" + i + ") {");
+                out.println("            " + statement);
+                out.println("        }");
+            } else {
+                out.println("        " + statement);
+            }
+        }
+        out.println("        final long total = size;");
+        out.println("        return new Writable() {");
+        out.println();
+        out.println("            @Override");
+        out.println("            public void writeFormat(Output out) throws IOException {");
+        for (int i = 0; i < mappings.size(); i++) {
+            Mapping m = mappings.get(i);
+            String indent = "                ";
+            if (m.nullable) {
+                out.println(indent + "if (null != f" + i + ") {");
+                indent += "    ";
+            }
+            if (m.idLength == 1) {
+                out.println(indent + "out.writeByte((byte) 0x" + Long.toHexString(m.id).toUpperCase(Locale.ROOT) + ");");
+            } else {
+                out.println(indent + "EBMLFormatUtil.writeBytes(out, " + m.idConstant() + ", 0, " + m.idLength + ");");
+            }
+            out.println(indent + "EBMLFormatUtil.writeVint(out, s" + i + ");");
+            if (m.kind == Kind.OBJECT) {
+                out.println(indent + "w" + i + ".writeFormat(out);");
+            } else {
+                out.println(indent + "EBMLFormatUtil.writeSigned(out, v" + i + ", s" + i + ");");
+            }
+            if (m.nullable) {
+                out.println("                }");
+            }
+        }
+        out.println("            }");
+        out.println();
+        out.println("            @Override");
+        out.println("            public long getSize() {");
+        out.println("                return total;");
+        out.println("            }");
+        out.println();
+        out.println("        };");
+        out.println("    }");
+    }
+
+    private static String idBytes(Mapping m) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = m.idLength - 1; i >= 0; i--) {
+            sb.append("(byte) 0x").append(Long.toHexString(0xFF & (m.id >>> (i * Byte.SIZE))).toUpperCase(Locale.ROOT));
+            if (i > 0) {
+                sb.append(", ");
+            }
+        }
+        return sb.toString();
+    }
+
+    private boolean error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+        return false;
+    }
+
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.codegen.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import one.utopic.sparse.ebml.EBMLFormat;
+import one.utopic.sparse.ebml.codec.EBMLCodec;
+import one.utopic.sparse.ebml.codec.EBMLField;
+import one.utopic.sparse.ebml.codegen.EBMLCodecProcessor;
+import one.utopic.sparse.ebml.format.BigDecimalFormat;
+import one.utopic.sparse.ebml.io.ByteArrayOutput;
+
+public class EBMLCodecTest {
+
+    @EBMLCodec
+    static class Point {
+
+        @EBMLField(id = 0x81)
+        long x;
+
+        @EBMLField(id = 0x82)
+        int y;
+
+    }
+
+    @EBMLCodec
+    static class Record {
+
+        @EBMLField(id = 0x81)
+        long id;
+
+        @EBMLField(id = 0x4281)
+        boolean active;
+
+        @EBMLField(id = 0x83)
+        double ratio;
+
+        @EBMLField(id = 0x84)
+        float weight;
+
+        @EBMLField(id = 0x85)
+        Integer count;
+
+        @EBMLField(id = 0x1A45DFA3)
+        String name;
+
+        @EBMLField(id = 0x86)
+        byte[] payload;
+
+        @EBMLField(id = 0x87)
+        Point point;
+
+        @EBMLField(id = 0x88, format = BigDecimalFormat.class)
+        BigDecimal amount;
+
+        @EBMLField(id = 0x89)
+        private String note;
+
+        int skipped = 7;
+
+        public String getNote() {
+            return note;
+        }
+
+        public void setNote(String note) {
+            this.note = note;
+        }
+
+    }
+
+    @EBMLCodec
+    static class Partial {
+
+        @EBMLField(id = 0x81)
+        long id;
+
+        @EBMLField(id = 0x85)
+        Integer count = -1;
+
+    }
+
+    @EBMLCodec
+    static class CaseClash {
+
+        @EBMLField(id = 0x81, format = BigDecimalFormat.class)
+        BigDecimal fooBar;
+
+        @EBMLField(id = 0x82, format = BigDecimalFormat.class)
+        BigDecimal foobar;
+
+        @EBMLField(id = 0x83)
+        long FOOBAR_1;
+
+    }
+
+    private static <O> byte[] write(EBMLFormat<O> format, O data) throws IOException {
+        ByteArrayOutput out = new ByteArrayOutput();
+        EBMLFormat.Writable writable = format.getWritable(data);
+        writable.writeFormat(out);
+        assertEquals(writable.getSize(), out.size());
+        return out.toByteArray();
+    }
+
+    @DisplayName("CodecLayoutTest")
+    @Test
+    void codecLayoutTest() throws IOException {
+        Point point = new Point();
+        point.x = 1;
+        point.y = -1;
+        byte[] data = write(EBMLCodecTest_PointEBMLFormat.INSTANCE, point);
+        assertArrayEquals(new byte[] { (byte) 0x81, (byte) 0x81, 0x01, (byte) 0x82, (byte) 0x81, (byte) 0xFF }, data);
+        Point result = EBMLCodecTest_PointEBMLFormat.INSTANCE.readFormat(data);
+        assertEquals(1, result.x);
+        assertEquals(-1, result.y);
+    }
+
+    @DisplayName("CodecWriteReadTest")
+    @Test
+    void codecWriteReadTest() throws IOException {
+        Record record = new Record();
+        record.id = Long.MIN_VALUE;
+        record.active = true;
+        record.ratio = 0.1;
+        record.weight = -1.5f;
+        record.count = Integer.MAX_VALUE;
+        record.name = "Name é中";
+        record.payload = new byte[] { 1, 2, 3 };
+        record.point = new Point();
+        record.point.x = 1L << 40;
+        record.amount = new BigDecimal("12345.678");
+        record.setNote("Note");
+        record.skipped = 0;
+        byte[] data = write(EBMLCodecTest_RecordEBMLFormat.INSTANCE, record);
+        ByteBuffer buffer = ByteBuffer.allocate(data.length + 2);
+        buffer.position(1);
+        buffer.put(data);
+        buffer.position(1).limit(data.length + 1);
+        for (Record result : new Record[] { EBMLCodecTest_RecordEBMLFormat.INSTANCE.readFormat(data),
+                EBMLCodecTest_RecordEBMLFormat.INSTANCE.readFormat(buffer) }) {
+            assertEquals(record.id, result.id);
+            assertTrue(result.active);
+            assertEquals(record.ratio, result.ratio);
+            assertEquals(record.weight, result.weight);
+            assertEquals(record.count, result.count);
+            assertEquals(record.name, result.name);
+            assertArrayEquals(record.payload, result.payload);
+            assertEquals(record.point.x, result.point.x);
+            assertEquals(record.amount, result.amount);
+            assertEquals(record.getNote(), result.getNote());
+            assertEquals(7, result.skipped);
+        }
+        assertEquals(1, buffer.position());
+    }
+
+    @DisplayName("CodecNullTest")
+    @Test
+    void codecNullTest() throws IOException {
+        Record record = new Record();
+        byte[] data = write(EBMLCodecTest_RecordEBMLFormat.INSTANCE, record);
+        // only primitives are written
+        assertEquals(3 + 4 + 2 + Double.BYTES + 2 + Float.BYTES, data.length);
+        Record result = EBMLCodecTest_RecordEBMLFormat.INSTANCE.readFormat(data);
+        assertFalse(result.active);
+        assertNull(result.count);
+        assertNull(result.name);
+        assertNull(result.point);
+        assertNull(result.getNote());
+    }
+
+    @DisplayName("CodecSkipTest")
+    @Test
+    void codecSkipTest() throws IOException {
+        Record record = new Record();
+        record.id = 42;
+        record.name = "Skipped";
+        record.point = new Point();
+        byte[] data = write(EBMLCodecTest_RecordEBMLFormat.INSTANCE, record);
+        Partial result = EBMLCodecTest_PartialEBMLFormat.INSTANCE.readFormat(data);
+        assertEquals(42, result.id);
+        assertEquals(Integer.valueOf(-1), result.count);
+        assertThrows(IllegalArgumentException.class,
+                () -> EBMLCodecTest_PartialEBMLFormat.INSTANCE.readFormat(new byte[] { (byte) 0x81, (byte) 0x88, 0x01 }));
+    }
+
+    @DisplayName("CodecCaseClashTest")
+    @Test
+    void codecCaseClashTest() throws IOException {
+        CaseClash data = new CaseClash();
+        data.fooBar = BigDecimal.ONE;
+        data.foobar = BigDecimal.TEN;
+        data.FOOBAR_1 = 2;
+        CaseClash result = EBMLCodecTest_CaseClashEBMLFormat.INSTANCE.readFormat(write(EBMLCodecTest_CaseClashEBMLFormat.INSTANCE, data));
+        assertEquals(data.fooBar, result.fooBar);
+        assertEquals(data.foobar, result.foobar);
+        assertEquals(data.FOOBAR_1, result.FOOBAR_1);
+    }
+
+    @DisplayName("CodecFormatErrorTest")
+    @Test
+    void codecFormatErrorTest() throws IOException {
+        String source = "import one.utopic.sparse.ebml.codec.*;\n" //
+                + "import one.utopic.sparse.ebml.format.*;\n" //
+                + "@EBMLCodec public class Invalid {\n" //
+                + "  @EBMLField(id = 0x81, format = DateFormat.class) java.util.Date date;\n" //
+                + "  @EBMLField(id = 0x82, format = LongFormat.class) String text;\n" //
+                + "  @EBMLField(id = 0x83, format = LongFormat.class) long value;\n" //
+                + "}\n";
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///Invalid.java"), JavaFileObject.Kind.SOURCE) {
+
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+
+        };
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-proc:only", "-classpath", System.getProperty("java.class.path")), null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new EBMLCodecProcessor()));
+        assertFalse(task.call());
+        String[] errors = diagnostics.getDiagnostics().stream().map(d -> d.getLineNumber() + ": " + d.getMessage(null))
+                .toArray(String[]::new);
+        assertEquals(2, errors.length, Arrays.toString(errors));
+        assertTrue(errors[0].startsWith("4: ") && errors[0].contains("no-arg constructor"), errors[0]);
+        assertTrue(errors[1].startsWith("5: ") && errors[1].contains("does not match field type"), errors[1]);
+    }
+
+}
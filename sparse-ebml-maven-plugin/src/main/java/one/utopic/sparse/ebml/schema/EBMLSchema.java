@@ -0,0 +1,186 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.schema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import one.utopic.sparse.ebml.EBMLCode;
+
+/**
+ * EBML schema in RFC 8794 XML form, only element names, ids, types and paths
+ * are read
+ */
+public final class EBMLSchema {
+
+    public static final String TYPE_MASTER = "master";
+
+    /**
+     * EBML header and global elements defined by RFC 8794, document type
+     * schemas usually don't repeat them
+     */
+    private static final Element[] HEADER = { //
+            new Element("EBML", 0x1A45DFA3L, TYPE_MASTER, "\\EBML"), //
+            new Element("EBMLVersion", 0x4286L, "uinteger", "\\EBML\\EBMLVersion"), //
+            new Element("EBMLReadVersion", 0x42F7L, "uinteger", "\\EBML\\EBMLReadVersion"), //
+            new Element("EBMLMaxIDLength", 0x42F2L, "uinteger", "\\EBML\\EBMLMaxIDLength"), //
+            new Element("EBMLMaxSizeLength", 0x42F3L, "uinteger", "\\EBML\\EBMLMaxSizeLength"), //
+            new Element("DocType", 0x4282L, "string", "\\EBML\\DocType"), //
+            new Element("DocTypeVersion", 0x4287L, "uinteger", "\\EBML\\DocTypeVersion"), //
+            new Element("DocTypeReadVersion", 0x4285L, "uinteger", "\\EBML\\DocTypeReadVersion"), //
+            new Element("DocTypeExtension", 0x4281L, TYPE_MASTER, "\\EBML\\DocTypeExtension"), //
+            new Element("DocTypeExtensionName", 0x4283L, "string", "\\EBML\\DocTypeExtension\\DocTypeExtensionName"), //
+            new Element("DocTypeExtensionVersion", 0x4284L, "uinteger", "\\EBML\\DocTypeExtension\\DocTypeExtensionVersion"), //
+            new Element("CRC-32", 0xBFL, "binary", "\\(1-\\)CRC-32"), //
+            new Element("Void", 0xECL, "binary", "\\(-\\)Void"), //
+    };
+
+    public static final class Element {
+
+        private final String name;
+        private final long id;
+        private final String type;
+        private final String path;
+
+        public Element(String name, long id, String type, String path) {
+            this.name = name;
+            this.id = id;
+            this.type = type;
+            this.path = path;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public boolean isMaster() {
+            return TYPE_MASTER.equals(type);
+        }
+
+        @Override
+        public String toString() {
+            return name + " [" + Long.toHexString(id).toUpperCase() + "] " + path;
+        }
+
+    }
+
+    private final String docType;
+    private final List<Element> elements;
+
+    public EBMLSchema(String docType, List<Element> elements) {
+        this.docType = docType;
+        this.elements = Collections.unmodifiableList(new ArrayList<Element>(elements));
+    }
+
+    public String getDocType() {
+        return docType;
+    }
+
+    public List<Element> getElements() {
+        return elements;
+    }
+
+    /**
+     * @return schema with EBML header and global elements which are not defined
+     *         by this schema
+     */
+    public EBMLSchema withHeader() {
+        Set<String> names = new HashSet<String>();
+        for (Element element : elements) {
+            names.add(element.getName());
+        }
+        List<Element> result = new ArrayList<Element>();
+        for (Element element : HEADER) {
+            if (!names.contains(element.getName())) {
+                result.add(element);
+            }
+        }
+        result.addAll(elements);
+        return new EBMLSchema(docType, result);
+    }
+
+    public static EBMLSchema parse(InputStream in) throws IOException {
+        Document document;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            document = builder.parse(in);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Failed to parse EBML schema: " + e.getMessage(), e);
+        }
+        org.w3c.dom.Element root = document.getDocumentElement();
+        if (!"EBMLSchema".equals(root.getLocalName())) {
+            throw new IOException("EBMLSchema root element expected, found " + root.getLocalName());
+        }
+        String docType = root.getAttribute("docType");
+        if (docType.isEmpty()) {
+            throw new IOException("EBMLSchema docType attribute is missing");
+        }
+        List<Element> elements = new ArrayList<Element>();
+        NodeList nodes = root.getElementsByTagNameNS("*", "element");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            org.w3c.dom.Element node = (org.w3c.dom.Element) nodes.item(i);
+            String name = node.getAttribute("name");
+            String path = node.getAttribute("path");
+            String type = node.getAttribute("type");
+            if (name.isEmpty() || path.isEmpty() || type.isEmpty()) {
+                throw new IOException("Element " + i + " should have name, path and type attributes");
+            }
+            long id;
+            try {
+                id = Long.decode(node.getAttribute("id"));
+                new EBMLCode(id);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Element " + name + " has invalid id " + node.getAttribute("id"), e);
+            }
+            elements.add(new Element(name, id, type, path));
+        }
+        return new EBMLSchema(docType, elements);
+    }
+
+}
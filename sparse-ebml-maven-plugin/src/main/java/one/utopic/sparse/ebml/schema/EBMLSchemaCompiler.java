@@ -0,0 +1,451 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.schema;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import one.utopic.sparse.ebml.schema.EBMLSchema.Element;
+
+/**
+ * Compiles an {@link EBMLSchema} into EBMLType enum source.
+ * <p>
+ * Every master element gets a context holding its children, top level
+ * elements belong to ROOT context and global elements to every context
+ * within their level range. Context lookup uses a multiplicative perfect hash
+ * found at compile time, so it is a single probe, and contains is a bitset
+ * test over type ordinals.
+ */
+public final class EBMLSchemaCompiler {
+
+    public static final String ROOT = "ROOT";
+
+    private static final String TYPES = "TYPES";
+    private static final Pattern GLOBAL_PATH = Pattern.compile("(.*)\\\\\\((\\d*)-(\\d*)\\\\\\)([^\\\\]+)");
+    private static final int HASH_ATTEMPTS = 1 << 12;
+
+    private static final class Context {
+
+        final String name;
+        final String path;
+        final int depth;
+        final Context parent;
+        final List<Integer> members = new ArrayList<Integer>();
+
+        long multiplier;
+        int bits;
+
+        Context(String name, String path, int depth, Context parent) {
+            this.name = name;
+            this.path = path;
+            this.depth = depth;
+            this.parent = parent;
+        }
+
+        void add(int ordinal) {
+            if (!members.contains(ordinal)) {
+                members.add(ordinal);
+            }
+        }
+
+    }
+
+    private final String packageName;
+    private final String className;
+    private final String docType;
+    private final List<Element> elements;
+    private final List<String> names = new ArrayList<String>();
+    private final Map<String, Context> contexts = new LinkedHashMap<String, Context>();
+    private final Map<Element, Context> elementContexts = new HashMap<Element, Context>();
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the schema is inconsistent
+     */
+    public EBMLSchemaCompiler(EBMLSchema schema, String packageName) {
+        this.packageName = packageName;
+        this.className = getClassName(schema.getDocType());
+        this.docType = schema.getDocType();
+        this.elements = schema.getElements();
+        Set<String> typeNames = new HashSet<String>();
+        typeNames.add(TYPES);
+        for (Element element : elements) {
+            String name = getConstantName(element.getName());
+            if (!typeNames.add(name)) {
+                throw new IllegalArgumentException("Element " + element + " name " + name + " is not unique");
+            }
+            names.add(name);
+        }
+        buildContexts();
+        for (Context context : contexts.values()) {
+            findHash(context);
+        }
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getQualifiedName() {
+        return packageName.isEmpty() ? className : packageName + "." + className;
+    }
+
+    /**
+     * @return enum name for the doc type, e.g. MatroskaType for matroska
+     */
+    public static String getClassName(String docType) {
+        StringBuilder sb = new StringBuilder();
+        boolean upper = true;
+        for (char c : docType.toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            } else {
+                upper = true;
+            }
+        }
+        if (sb.length() == 0 || !Character.isJavaIdentifierStart(sb.charAt(0))) {
+            sb.insert(0, "EBML");
+        }
+        return sb.append("Type").toString();
+    }
+
+    /**
+     * @return upper case constant name for the element name, e.g.
+     *         EBML_MAX_ID_LENGTH for EBMLMaxIDLength
+     */
+    public static String getConstantName(String name) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                c = '_';
+            } else if (i > 0 && Character.isUpperCase(c)) {
+                char prev = name.charAt(i - 1);
+                boolean next = i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1));
+                if (Character.isLowerCase(prev) || Character.isDigit(prev) || (Character.isUpperCase(prev) && next)) {
+                    sb.append('_');
+                }
+            }
+            sb.append(Character.toUpperCase(c));
+        }
+        if (sb.length() == 0 || !Character.isJavaIdentifierStart(sb.charAt(0))) {
+            sb.insert(0, '_');
+        }
+        return sb.toString();
+    }
+
+    private void buildContexts() {
+        Context root = new Context(ROOT, "", 0, null);
+        contexts.put(root.path, root);
+        Set<String> contextNames = new HashSet<String>();
+        contextNames.add(ROOT);
+        // paths are declared parent first in schemas, but it is not required
+        List<Element> masters = new ArrayList<Element>();
+        for (Element element : elements) {
+            if (element.isMaster()) {
+                masters.add(element);
+            }
+        }
+        masters.sort((a, b) -> Integer.compare(depth(a.getPath()), depth(b.getPath())));
+        for (Element element : masters) {
+            Matcher global = GLOBAL_PATH.matcher(element.getPath());
+            Context parent = global.matches() ? root : getParent(element);
+            String name = names.get(elements.indexOf(element));
+            if (!contextNames.add(name)) {
+                throw new IllegalArgumentException("Element " + element + " context name " + name + " is not unique");
+            }
+            Context context = new Context(name, element.getPath(), global.matches() ? 0 : depth(element.getPath()), parent);
+            if (contexts.put(context.path, context) != null) {
+                throw new IllegalArgumentException("Element " + element + " path is not unique");
+            }
+            elementContexts.put(element, context);
+        }
+        for (int i = 0; i < elements.size(); i++) {
+            Element element = elements.get(i);
+            Matcher global = GLOBAL_PATH.matcher(element.getPath());
+            if (global.matches()) {
+                checkName(element, global.group(4));
+                String prefix = global.group(1);
+                int min = global.group(2).isEmpty() ? 0 : Integer.parseInt(global.group(2));
+                int max = global.group(3).isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(global.group(3));
+                for (Context context : contexts.values()) {
+                    int level = context.depth - depth(prefix);
+                    if ((context.path.equals(prefix) || context.path.startsWith(prefix + "\\")) && level >= min && level <= max) {
+                        context.add(i);
+                    }
+                }
+            } else {
+                String last = element.getPath().substring(element.getPath().lastIndexOf('\\') + 1);
+                boolean recursive = last.startsWith("+");
+                checkName(element, recursive ? last.substring(1) : last);
+                getParent(element).add(i);
+                if (recursive) {
+                    if (!element.isMaster()) {
+                        throw new IllegalArgumentException("Recursive element " + element + " should be master");
+                    }
+                    elementContexts.get(element).add(i);
+                }
+            }
+        }
+        for (Context context : contexts.values()) {
+            Map<Long, Element> ids = new HashMap<Long, Element>();
+            for (int i : context.members) {
+                Element element = elements.get(i);
+                Element other = ids.put(element.getId(), element);
+                if (other != null) {
+                    throw new IllegalArgumentException("Elements " + other + " and " + element + " share id within " + context.name);
+                }
+            }
+        }
+    }
+
+    private Context getParent(Element element) {
+        String path = element.getPath();
+        if (!path.startsWith("\\")) {
+            throw new IllegalArgumentException("Element " + element + " path should start with \\");
+        }
+        Context parent = contexts.get(path.substring(0, path.lastIndexOf('\\')));
+        if (parent == null) {
+            throw new IllegalArgumentException("Element " + element + " parent is not a master element");
+        }
+        return parent;
+    }
+
+    private static void checkName(Element element, String pathName) {
+        if (!element.getName().equals(pathName)) {
+            throw new IllegalArgumentException("Element " + element + " path should end with its name");
+        }
+    }
+
+    private static int depth(String path) {
+        int depth = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '\\') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Looks for a multiplier mapping context codes to distinct slots of a
+     * table with at least twice as many slots as codes, doubling the table if
+     * attempts are exhausted. Multipliers are drawn from a fixed sequence, so
+     * output is reproducible.
+     */
+    private void findHash(Context context) {
+        long[] codes = new long[context.members.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = elements.get(context.members.get(i)).getId();
+        }
+        long seed = 0;
+        // empty contexts get 2 slots as well, a shift by 64 would be a no-op
+        for (int bits = Long.SIZE - Long.numberOfLeadingZeros(Math.max(1, codes.length * 2L - 1));; bits++) {
+            for (int attempt = 0; attempt < HASH_ATTEMPTS; attempt++) {
+                long multiplier = mix(++seed) | 1;
+                if (isPerfect(codes, multiplier, bits)) {
+                    context.multiplier = multiplier;
+                    context.bits = bits;
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean isPerfect(long[] codes, long multiplier, int bits) {
+        boolean[] used = new boolean[1 << bits];
+        for (long code : codes) {
+            int i = slot(code, multiplier, bits);
+            if (used[i]) {
+                return false;
+            }
+            used[i] = true;
+        }
+        return true;
+    }
+
+    private static int slot(long code, long multiplier, int bits) {
+        return (int) ((code * multiplier) >>> (Long.SIZE - bits));
+    }
+
+    private static long mix(long seed) {
+        long z = seed * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public void write(Writer writer) throws IOException {
+        PrintWriter out = new PrintWriter(writer);
+        if (!packageName.isEmpty()) {
+            out.println("package " + packageName + ";");
+            out.println();
+        }
+        out.println("import one.utopic.sparse.ebml.EBMLCode;");
+        out.println("import one.utopic.sparse.ebml.EBMLType;");
+        out.println();
+        out.println("/**");
+        out.println(" * Generated by sparse-ebml-maven-plugin from " + docType + " EBML schema");
+        out.println(" */");
+        out.println("public enum " + className + " implements EBMLType {");
+        out.println();
+        for (int i = 0; i < elements.size(); i++) {
+            Element element = elements.get(i);
+            Context context = elementContexts.get(element);
+            out.println("    " + names.get(i) + "(" + hex(element.getId()) + ", " + (context == null ? "null" : "Context." + context.name)
+                    + "), //");
+        }
+        out.println("    ;");
+        out.println();
+        out.println("    public static enum Context implements EBMLType.Context {");
+        out.println();
+        for (Context context : contexts.values()) {
+            writeContext(out, context);
+        }
+        out.println("        ;");
+        out.println();
+        out.println("        private final Context parent;");
+        out.println("        private final long multiplier;");
+        out.println("        private final int shift;");
+        out.println("        private final long[] codes;");
+        out.println("        private final int[] types;");
+        out.println("        private final long[] members;");
+        out.println();
+        out.println("        private Context(Context parent, long multiplier, int shift, long[] codes, int[] types, long[] members) {");
+        out.println("            this.parent = parent;");
+        out.println("            this.multiplier = multiplier;");
+        out.println("            this.shift = shift;");
+        out.println("            this.codes = codes;");
+        out.println("            this.types = types;");
+        out.println("            this.members = members;");
+        out.println("        }");
+        out.println();
+        out.println("        public Context getParent() {");
+        out.println("            return parent;");
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public " + className + " getType(EBMLCode code) {");
+        out.println("            return getType(code.longValue());");
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public " + className + " getType(long code) {");
+        out.println("            int i = (int) ((code * multiplier) >>> shift);");
+        out.println("            int type = types[i];");
+        out.println("            return type >= 0 && codes[i] == code ? " + TYPES + "[type] : null;");
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public boolean contains(EBMLType type) {");
+        out.println("            if (!(type instanceof " + className + ")) {");
+        out.println("                return false;");
+        out.println("            }");
+        out.println("            int ordinal = ((" + className + ") type).ordinal();");
+        out.println("            return (members[ordinal >>> 6] & 1L << ordinal) != 0;");
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public boolean is(EBMLType.Context context) {");
+        out.println("            for (Context c = this; null != c; c = c.parent) {");
+        out.println("                if (c == context) {");
+        out.println("                    return true;");
+        out.println("                }");
+        out.println("            }");
+        out.println("            return false;");
+        out.println("        }");
+        out.println();
+        out.println("    }");
+        out.println();
+        out.println("    private static final " + className + "[] " + TYPES + " = values();");
+        out.println();
+        out.println("    private final EBMLCode code;");
+        out.println("    private final EBMLType.Context context;");
+        out.println();
+        out.println("    private " + className + "(long code, Context context) {");
+        out.println("        this.code = new EBMLCode(code).intern();");
+        out.println("        this.context = null == context ? EBMLType.Context.EMPTY : context;");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public EBMLCode getEBMLCode() {");
+        out.println("        return code;");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public EBMLType.Context getContext() {");
+        out.println("        return context;");
+        out.println("    }");
+        out.println();
+        out.println("}");
+        out.flush();
+        if (out.checkError()) {
+            throw new IOException("Failed to write " + getQualifiedName());
+        }
+    }
+
+    private void writeContext(PrintWriter out, Context context) {
+        int size = 1 << context.bits;
+        long[] codes = new long[size];
+        long[] types = new long[size];
+        Arrays.fill(types, -1);
+        long[] members = new long[(elements.size() + Long.SIZE - 1) / Long.SIZE];
+        for (int ordinal : context.members) {
+            long code = elements.get(ordinal).getId();
+            int i = slot(code, context.multiplier, context.bits);
+            codes[i] = code;
+            types[i] = ordinal;
+            members[ordinal >>> 6] |= 1L << ordinal;
+        }
+        out.println("        " + context.name + "(" + (context.parent == null ? "null" : context.parent.name) + ", "
+                + hex(context.multiplier) + ", " + (Long.SIZE - context.bits) + ", //");
+        out.println("                new long[] { " + join(codes, true) + " }, //");
+        out.println("                new int[] { " + join(types, false) + " }, //");
+        out.println("                new long[] { " + join(members, true) + " }), //");
+    }
+
+    private static String join(long[] values, boolean hex) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(i % 8 == 0 ? ",\n                        " : ", ");
+            }
+            sb.append(hex ? hex(values[i]) : Long.toString(values[i]));
+        }
+        return sb.toString();
+    }
+
+    private static String hex(long value) {
+        return "0x" + Long.toHexString(value).toUpperCase(Locale.ROOT) + "L";
+    }
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.schema;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Generates an EBMLType enum with its contexts for every EBML schema (*.xml)
+ * found in schema directory
+ */
+@Mojo(name = "generate", defaultPhase = LifecyclePhase.GENERATE_SOURCES, threadSafe = true)
+public class GenerateMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project.basedir}/src/main/ebml", required = true)
+    private File schemaDirectory;
+
+    @Parameter(defaultValue = "${project.build.directory}/generated-sources/ebml", required = true)
+    private File outputDirectory;
+
+    @Parameter(required = true)
+    private String packageName;
+
+    /**
+     * Adds EBML header and global elements of RFC 8794 not defined by the
+     * schema
+     */
+    @Parameter(defaultValue = "true")
+    private boolean includeHeader;
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        File[] schemas = schemaDirectory.listFiles((dir, name) -> name.endsWith(".xml"));
+        if (schemas == null || schemas.length == 0) {
+            getLog().info("No EBML schemas found in " + schemaDirectory);
+            return;
+        }
+        Arrays.sort(schemas);
+        File packageDirectory = new File(outputDirectory, packageName.replace('.', File.separatorChar));
+        for (File file : schemas) {
+            try {
+                EBMLSchema schema;
+                try (InputStream in = new FileInputStream(file)) {
+                    schema = EBMLSchema.parse(in);
+                }
+                EBMLSchemaCompiler compiler = new EBMLSchemaCompiler(includeHeader ? schema.withHeader() : schema, packageName);
+                Files.createDirectories(packageDirectory.toPath());
+                File target = new File(packageDirectory, compiler.getClassName() + ".java");
+                try (Writer out = new OutputStreamWriter(Files.newOutputStream(target.toPath()), StandardCharsets.UTF_8)) {
+                    compiler.write(out);
+                }
+                getLog().info("Generated " + compiler.getQualifiedName() + " from " + file.getName());
+            } catch (IllegalArgumentException e) {
+                throw new MojoFailureException("Invalid EBML schema " + file + ": " + e.getMessage(), e);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to generate sources for " + file + ": " + e.getMessage(), e);
+            }
+        }
+        project.addCompileSourceRoot(outputDirectory.getAbsolutePath());
+    }
+
+}
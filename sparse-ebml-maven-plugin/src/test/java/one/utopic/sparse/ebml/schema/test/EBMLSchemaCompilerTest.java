@@ -0,0 +1,218 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.schema.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import one.utopic.abio.api.output.Output;
+import one.utopic.sparse.ebml.EBMLCode;
+import one.utopic.sparse.ebml.EBMLType;
+import one.utopic.sparse.ebml.schema.EBMLSchema;
+import one.utopic.sparse.ebml.schema.EBMLSchemaCompiler;
+
+public class EBMLSchemaCompilerTest {
+
+    private static final String PACKAGE = "one.utopic.sparse.ebml.schema.generated";
+
+    private static EBMLSchema loadSchema() throws IOException {
+        try (InputStream in = EBMLSchemaCompilerTest.class.getResourceAsStream("/test-schema.xml")) {
+            return EBMLSchema.parse(in);
+        }
+    }
+
+    private static EBMLSchema parse(String elements) throws IOException {
+        String xml = "<EBMLSchema xmlns=\"urn:ietf:rfc:8794\" docType=\"test\">" + elements + "</EBMLSchema>";
+        return EBMLSchema.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String classPath(Class<?>... classes) throws URISyntaxException {
+        StringBuilder sb = new StringBuilder();
+        for (Class<?> c : classes) {
+            sb.append(new File(c.getProtectionDomain().getCodeSource().getLocation().toURI())).append(File.pathSeparator);
+        }
+        return sb.toString();
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <T extends EBMLType> T type(Class<?> type, String name) {
+        return (T) Enum.valueOf((Class) type, name);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static EBMLType.Context context(Class<?> type, String name) throws ClassNotFoundException {
+        return (EBMLType.Context) Enum.valueOf((Class) Class.forName(type.getName() + "$Context", true, type.getClassLoader()), name);
+    }
+
+    /**
+     * @return directory with compiled classes
+     */
+    private static Path compile(EBMLSchemaCompiler compiler) throws IOException, URISyntaxException {
+        StringWriter source = new StringWriter();
+        compiler.write(source);
+        Path dir = Files.createTempDirectory("ebml-schema");
+        Path file = dir.resolve(compiler.getClassName() + ".java");
+        Files.write(file, source.toString().getBytes(StandardCharsets.UTF_8));
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0,
+                javac.run(null, null, null, "-classpath", classPath(EBMLType.class, Output.class), "-d", dir.toString(), file.toString()));
+        return dir;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @DisplayName("SchemaCompileTest")
+    @Test
+    void schemaCompileTest() throws Exception {
+        EBMLSchemaCompiler compiler = new EBMLSchemaCompiler(loadSchema().withHeader(), PACKAGE);
+        assertEquals("TestDocType", compiler.getClassName());
+        Path dir = compile(compiler);
+        try {
+            try (URLClassLoader loader = new URLClassLoader(new URL[] { dir.toUri().toURL() }, getClass().getClassLoader())) {
+                Class<?> types = loader.loadClass(compiler.getQualifiedName());
+                EBMLType.Context root = context(types, EBMLSchemaCompiler.ROOT);
+                EBMLType.Context segment = context(types, "SEGMENT");
+                EBMLType.Context info = context(types, "INFO");
+                EBMLType.Context atom = context(types, "CHAPTER_ATOM");
+                EBMLType ebml = type(types, "EBML");
+                EBMLType title = type(types, "TITLE");
+                EBMLType chapterAtom = type(types, "CHAPTER_ATOM");
+                EBMLType voidType = type(types, "VOID");
+                EBMLType crc = type(types, "CRC_32");
+
+                assertSame(ebml, root.getType(0x1A45DFA3L));
+                assertSame(type(types, "SEGMENT"), root.getType(new EBMLCode(0x18538067L)));
+                assertSame(type(types, "EBML_MAX_ID_LENGTH"), ebml.getContext().getType(0x42F2L));
+                assertSame(title, info.getType(0x7BA9L));
+                assertSame(info, type(types, "INFO").getContext());
+                assertSame(EBMLType.Context.EMPTY, title.getContext());
+                assertNull(root.getType(0x7BA9L));
+                assertNull(info.getType(0x1A45DFA3L));
+                assertNull(info.getType(-1L));
+                // same id in different contexts
+                assertSame(type(types, "INFO_FLAG"), info.getType(0x85L));
+                assertSame(type(types, "CHAPTER_FLAG"), atom.getType(0x85L));
+                // recursive element
+                assertSame(chapterAtom, context(types, "CHAPTERS").getType(0xB6L));
+                assertSame(chapterAtom, atom.getType(0xB6L));
+                // global elements
+                assertSame(voidType, root.getType(0xECL));
+                assertSame(voidType, info.getType(0xECL));
+                assertSame(voidType, context(types, "TAGS").getType(0xECL));
+                assertNull(root.getType(0xBFL));
+                assertSame(crc, segment.getType(0xBFL));
+                assertSame(crc, atom.getType(0xBFL));
+
+                for (Object c : Class.forName(types.getName() + "$Context", true, loader).getEnumConstants()) {
+                    EBMLType.Context context = (EBMLType.Context) c;
+                    for (Object t : types.getEnumConstants()) {
+                        EBMLType type = (EBMLType) t;
+                        assertEquals(context.getType(type.getEBMLCode()) == type, context.contains(type), context + " " + type);
+                    }
+                    assertTrue(context.is(context));
+                    assertTrue(context.is(root));
+                    assertFalse(context.is(null));
+                    assertFalse(context.contains(null));
+                }
+                assertTrue(atom.is(segment));
+                assertFalse(segment.is(info));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @DisplayName("SchemaEmptyContextTest")
+    @Test
+    void schemaEmptyContextTest() throws Exception {
+        // no global elements reach a master element without children
+        EBMLSchemaCompiler compiler = new EBMLSchemaCompiler(loadSchema(), PACKAGE);
+        Path dir = compile(compiler);
+        try {
+            try (URLClassLoader loader = new URLClassLoader(new URL[] { dir.toUri().toURL() }, getClass().getClassLoader())) {
+                Class<?> types = loader.loadClass(compiler.getQualifiedName());
+                EBMLType.Context tags = context(types, "TAGS");
+                assertSame(tags, type(types, "TAGS").getContext());
+                assertSame(type(types, "TAGS"), context(types, "SEGMENT").getType(0x1254C367L));
+                for (long code : new long[] { 0x85L, 0xBFL, 0xECL, 0x1254C367L, -1L }) {
+                    assertNull(tags.getType(code));
+                }
+                for (Object t : types.getEnumConstants()) {
+                    assertFalse(tags.contains((EBMLType) t));
+                }
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @DisplayName("SchemaNameTest")
+    @Test
+    void schemaNameTest() {
+        assertEquals("EBML_MAX_ID_LENGTH", EBMLSchemaCompiler.getConstantName("EBMLMaxIDLength"));
+        assertEquals("DOC_TYPE_READ_VERSION", EBMLSchemaCompiler.getConstantName("DocTypeReadVersion"));
+        assertEquals("CRC_32", EBMLSchemaCompiler.getConstantName("CRC-32"));
+        assertEquals("CHAPTER_UID", EBMLSchemaCompiler.getConstantName("ChapterUID"));
+        assertEquals("MatroskaType", EBMLSchemaCompiler.getClassName("matroska"));
+        assertEquals("TestDocType", EBMLSchemaCompiler.getClassName("test-doc"));
+    }
+
+    @DisplayName("SchemaErrorTest")
+    @Test
+    void schemaErrorTest() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> new EBMLSchemaCompiler(parse(
+                "<element name=\"A\" path=\"\\A\" id=\"0x81\" type=\"master\"/><element name=\"B\" path=\"\\A\\B\" id=\"0x81\" type=\"string\"/>"
+                        + "<element name=\"C\" path=\"\\A\\C\" id=\"0x81\" type=\"string\"/>"),
+                ""));
+        assertThrows(IllegalArgumentException.class,
+                () -> new EBMLSchemaCompiler(parse("<element name=\"B\" path=\"\\A\\B\" id=\"0x81\" type=\"string\"/>"), ""));
+        assertThrows(IllegalArgumentException.class,
+                () -> new EBMLSchemaCompiler(parse("<element name=\"B\" path=\"\\C\" id=\"0x81\" type=\"string\"/>"), ""));
+        assertThrows(IOException.class, () -> parse("<element name=\"B\" path=\"\\B\" id=\"0x40\" type=\"string\"/>"));
+    }
+
+}
@@ -20,13 +20,19 @@ package one.utopic.sparse.ebml;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import one.utopic.abio.api.output.Output;
 
 public final class EBMLCode {
 
-    private static final HashMap<EBMLCode, EBMLCode> internalCache = new HashMap<EBMLCode, EBMLCode>();
+    /**
+     * Upper bound of interned codes count, codes beyond it are not interned to
+     * keep memory bounded when untrusted input is decoded
+     */
+    public static final int INTERN_LIMIT = 1 << 16;
+
+    private static final ConcurrentHashMap<EBMLCode, EBMLCode> internalCache = new ConcurrentHashMap<EBMLCode, EBMLCode>();
 
     private static final char[] hexCode = "0123456789ABCDEF".toCharArray();
 
@@ -39,23 +45,50 @@ public final class EBMLCode {
         return r.toString();
     }
 
-    private static synchronized EBMLCode intern(EBMLCode extCode) {
+    private static EBMLCode intern(EBMLCode extCode) {
         EBMLCode intCode = internalCache.get(extCode);
         if (intCode != null) {
             return intCode;
-        } else {
-            internalCache.put(extCode, extCode);
+        }
+        // the limit check is racy, so the cache may slightly exceed it
+        if (internalCache.size() >= INTERN_LIMIT) {
             return extCode;
         }
+        intCode = internalCache.putIfAbsent(extCode, extCode);
+        return intCode != null ? intCode : extCode;
+    }
+
+    private static byte[] toBytes(long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("EBMLCode [" + Long.toHexString(value) + "] is not a valid EBML coded data");
+        }
+        byte[] code = new byte[(Long.SIZE - Long.numberOfLeadingZeros(value) + Byte.SIZE - 1) / Byte.SIZE];
+        for (int i = code.length - 1; i >= 0; i--, value >>>= Byte.SIZE) {
+            code[i] = (byte) value;
+        }
+        return code;
     }
 
     private final byte[] code;
+    private final long value;
 
     public EBMLCode(byte[] code) {
         if (!EBMLFormatUtil.isCodeValid(code)) {
             throw new IllegalArgumentException("EBMLCode [" + printHex(code) + "] is not a valid EBML coded data");
         }
         this.code = code;
+        long value = -1;
+        if (code.length <= Long.BYTES) {
+            value = 0;
+            for (int i = 0; i < code.length; i++) {
+                value = value << Byte.SIZE | (0xFF & code[i]);
+            }
+        }
+        this.value = value;
+    }
+
+    public EBMLCode(long code) {
+        this(toBytes(code));
     }
 
     int getSize() {
@@ -63,21 +96,27 @@ public final class EBMLCode {
     }
 
     public void write(Output out) throws IOException {
-        for (int i = 0; i < code.length; i++) {
-            out.writeByte(code[i]);
-        }
+        EBMLFormatUtil.writeBytes(out, code, 0, code.length);
+    }
+
+    /**
+     * @return code bytes packed into a long or -1 if code is longer than 8 bytes
+     */
+    public long longValue() {
+        return value;
     }
 
+    /**
+     * @return canonical instance of the code, or the code itself if the intern
+     *         limit is reached
+     */
     public EBMLCode intern() {
         return intern(this);
     }
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + Arrays.hashCode(code);
-        return result;
+        return value != -1 ? Long.hashCode(value) : Arrays.hashCode(code);
     }
 
     @Override
@@ -89,9 +128,9 @@ public final class EBMLCode {
         if (getClass() != obj.getClass())
             return false;
         EBMLCode other = (EBMLCode) obj;
-        if (!Arrays.equals(code, other.code))
+        if (value != other.value)
             return false;
-        return true;
+        return value != -1 || Arrays.equals(code, other.code);
     }
 
     @Override
@@ -0,0 +1,122 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml;
+
+/**
+ * Open addressing map keyed by packed EBML code values (see
+ * {@link EBMLCode#longValue()}), lookups do not allocate. Modifications are not
+ * thread safe, so the map should be filled before being shared.
+ */
+public final class EBMLCodeMap<T> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long EMPTY = 0; // never a valid EBML code
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public EBMLCodeMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public EBMLCodeMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(INITIAL_CAPACITY, expectedSize * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    private static int hash(long code) {
+        long h = code * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(long code) {
+        if (code == EMPTY) {
+            return null;
+        }
+        for (int i = hash(code) & mask;; i = (i + 1) & mask) {
+            long key = keys[i];
+            if (key == code) {
+                return (T) values[i];
+            } else if (key == EMPTY) {
+                return null;
+            }
+        }
+    }
+
+    public T get(EBMLCode code) {
+        return get(code.longValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    public T putIfAbsent(long code, T value) {
+        if (code <= EMPTY) {
+            throw new IllegalArgumentException("Code " + Long.toHexString(code) + " can't be used as a key");
+        }
+        int i = hash(code) & mask;
+        for (long key; (key = keys[i]) != EMPTY; i = (i + 1) & mask) {
+            if (key == code) {
+                return (T) values[i];
+            }
+        }
+        keys[i] = code;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    public T putIfAbsent(EBMLCode code, T value) {
+        return putIfAbsent(code.longValue(), value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            if (key != EMPTY) {
+                int i = hash(key) & mask;
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EBMLCodeMap [size=" + size + ", capacity=" + keys.length + "]";
+    }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable and thread safe {@link EBMLType.Context} built with
+ * {@link #builder()}.
+ * <p>
+ * Types are resolved by packed code (see {@link EBMLCode#longValue()}) with a
+ * single {@link EBMLCodeMap} lookup. Types of an EBMLContext parent are copied
+ * on build, own types shadow parent types of the same code, other parent
+ * contexts are asked when a code is not found. When every type is a constant
+ * of one enum {@link #contains(EBMLType)} is a bitset test over ordinals.
+ */
+public final class EBMLContext implements EBMLType.Context {
+
+    public static Builder builder() {
+        return new Builder(null);
+    }
+
+    public static Builder builder(EBMLType.Context parent) {
+        return new Builder(Objects.requireNonNull(parent));
+    }
+
+    public static final class Builder {
+
+        private final EBMLType.Context parent;
+        private final List<EBMLType> types = new ArrayList<>();
+        private String name;
+
+        private Builder(EBMLType.Context parent) {
+            this.parent = parent;
+        }
+
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder add(EBMLType... types) {
+            for (EBMLType type : types) {
+                this.types.add(Objects.requireNonNull(type));
+            }
+            return this;
+        }
+
+        public Builder add(Iterable<? extends EBMLType> types) {
+            for (EBMLType type : types) {
+                this.types.add(Objects.requireNonNull(type));
+            }
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException
+         *             if two types share a code or a code is longer than 8
+         *             bytes
+         */
+        public EBMLContext build() {
+            return new EBMLContext(this);
+        }
+
+    }
+
+    private final String name;
+    private final EBMLType.Context parent;
+    private final EBMLType.Context fallback;
+    private final EBMLType[] types;
+    private final EBMLCodeMap<EBMLType> typeMap;
+    private final Class<?> enumClass;
+    private final long[] members;
+
+    private EBMLContext(Builder builder) {
+        this.name = builder.name;
+        this.parent = builder.parent;
+        List<EBMLType> types = new ArrayList<>();
+        EBMLCodeMap<EBMLType> typeMap = new EBMLCodeMap<>(builder.types.size());
+        for (EBMLType type : builder.types) {
+            long code = type.getEBMLCode().longValue();
+            if (code == -1) {
+                throw new IllegalArgumentException("Type " + type + " code " + type.getEBMLCode() + " is longer than 8 bytes");
+            }
+            EBMLType registered = typeMap.putIfAbsent(code, type);
+            if (registered == null) {
+                types.add(type);
+            } else if (registered != type) {
+                throw new IllegalArgumentException("Type " + registered + " is already registered for " + type.getEBMLCode());
+            }
+        }
+        if (this.parent instanceof EBMLContext) {
+            for (EBMLType type : ((EBMLContext) this.parent).types) {
+                if (typeMap.putIfAbsent(type.getEBMLCode().longValue(), type) == null) {
+                    types.add(type);
+                }
+            }
+            this.fallback = ((EBMLContext) this.parent).fallback;
+        } else {
+            this.fallback = EBMLType.Context.EMPTY == this.parent ? null : this.parent;
+        }
+        this.types = types.toArray(new EBMLType[types.size()]);
+        this.typeMap = typeMap;
+        this.enumClass = null == this.fallback ? getEnumClass(this.types) : null;
+        if (null != this.enumClass) {
+            int maxOrdinal = 0;
+            for (EBMLType type : this.types) {
+                maxOrdinal = Math.max(maxOrdinal, ((Enum<?>) type).ordinal());
+            }
+            this.members = new long[(maxOrdinal >>> 6) + 1];
+            for (EBMLType type : this.types) {
+                int ordinal = ((Enum<?>) type).ordinal();
+                this.members[ordinal >>> 6] |= 1L << ordinal;
+            }
+        } else {
+            this.members = null;
+        }
+    }
+
+    private static Class<?> getEnumClass(EBMLType[] types) {
+        Class<?> enumClass = null;
+        for (EBMLType type : types) {
+            if (!(type instanceof Enum)) {
+                return null;
+            }
+            Class<?> c = ((Enum<?>) type).getDeclaringClass();
+            if (null == enumClass) {
+                enumClass = c;
+            } else if (enumClass != c) {
+                return null;
+            }
+        }
+        return enumClass;
+    }
+
+    public EBMLType.Context getParent() {
+        return parent;
+    }
+
+    @Override
+    public EBMLType getType(EBMLCode code) {
+        return getType(code.longValue());
+    }
+
+    @Override
+    public EBMLType getType(long code) {
+        EBMLType type = this.typeMap.get(code);
+        return null == type && null != this.fallback ? this.fallback.getType(code) : type;
+    }
+
+    @Override
+    public boolean contains(EBMLType type) {
+        if (null == type) {
+            return false;
+        }
+        if (null != this.enumClass) {
+            if (!(type instanceof Enum) || ((Enum<?>) type).getDeclaringClass() != this.enumClass) {
+                return false;
+            }
+            int ordinal = ((Enum<?>) type).ordinal();
+            return ordinal >>> 6 < this.members.length && (this.members[ordinal >>> 6] & 1L << ordinal) != 0;
+        }
+        EBMLType registered = this.typeMap.get(type.getEBMLCode().longValue());
+        if (null == registered) {
+            return null != this.fallback && this.fallback.contains(type);
+        }
+        return registered == type;
+    }
+
+    /**
+     * @return true if context is this one or one of its parents
+     */
+    @Override
+    public boolean is(EBMLType.Context context) {
+        return null != context && (this == context || (null != this.parent && this.parent.is(context)));
+    }
+
+    @Override
+    public String toString() {
+        return null != this.name ? this.name : "EBMLContext " + Arrays.toString(this.types);
+    }
+
+}
@@ -20,10 +20,68 @@ package one.utopic.sparse.ebml;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import one.utopic.sparse.api.Event;
 
 public class EBMLEvent implements Event<EBMLType> {
 
+    /**
+     * Events of enum types, stored with the enum class, so they live as long as
+     * the type does
+     */
+    private static final ClassValue<EBMLEvent[]> enumEvents = new ClassValue<EBMLEvent[]>() {
+
+        @Override
+        protected EBMLEvent[] computeValue(Class<?> type) {
+            Object[] constants = type.getEnumConstants();
+            EBMLEvent[] events = new EBMLEvent[constants.length * 2];
+            for (int i = 0; i < constants.length; i++) {
+                events[i * 2] = new EBMLEvent((EBMLType) constants[i], CommonEventType.BEGIN);
+                events[i * 2 + 1] = new EBMLEvent((EBMLType) constants[i], CommonEventType.END);
+            }
+            return events;
+        }
+
+    };
+
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * Events of other types, a slot is replaced by the type hashed to it last
+     */
+    private static final AtomicReferenceArray<EBMLEvent[]> eventCache = new AtomicReferenceArray<>(CACHE_SIZE);
+
+    private static EBMLEvent getEvent(EBMLType ebmlType, int end) {
+        if (requireNonNull(ebmlType) instanceof Enum) {
+            Enum<?> constant = (Enum<?>) ebmlType;
+            return enumEvents.get(constant.getDeclaringClass())[constant.ordinal() * 2 + end];
+        }
+        int slot = (ebmlType.hashCode() * 0x9E3779B9 >>> 16) & (CACHE_SIZE - 1);
+        EBMLEvent[] events = eventCache.get(slot);
+        if (null == events || !ebmlType.equals(events[0].ebmlType)) {
+            events = new EBMLEvent[] { new EBMLEvent(ebmlType, CommonEventType.BEGIN), new EBMLEvent(ebmlType, CommonEventType.END) };
+            eventCache.set(slot, events);
+        }
+        return events[end];
+    }
+
+    /**
+     * @return shared BEGIN event instance of the type, instances of non enum
+     *         types are shared while they stay in a bounded cache
+     */
+    public static EBMLEvent begin(EBMLType ebmlType) {
+        return getEvent(ebmlType, 0);
+    }
+
+    /**
+     * @return shared END event instance of the type, instances of non enum
+     *         types are shared while they stay in a bounded cache
+     */
+    public static EBMLEvent end(EBMLType ebmlType) {
+        return getEvent(ebmlType, 1);
+    }
+
     private final EBMLType ebmlType;
     private final EventType eventType;
 
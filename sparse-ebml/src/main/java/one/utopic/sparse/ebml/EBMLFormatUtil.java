@@ -19,10 +19,13 @@
 package one.utopic.sparse.ebml;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 import one.utopic.abio.api.input.Input;
 import one.utopic.abio.api.output.Output;
+import one.utopic.sparse.ebml.io.BulkOutput;
 
 public final class EBMLFormatUtil {
 
@@ -106,6 +109,42 @@ public final class EBMLFormatUtil {
         return data.length + data.length / 7 + (data.length % 7 > 0 ? 1 : 0) - overlap;
     }
 
+    /**
+     * @return minimal length in bytes of value coded data, only 1 byte long
+     *         0xFF is treated as reserved
+     */
+    public static int vintLength(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value " + value + " should not be negative");
+        }
+        int bits = Long.SIZE - Long.numberOfLeadingZeros(value);
+        return value == Byte.MAX_VALUE ? 2 : Math.max(1, (bits + 6) / 7);
+    }
+
+    /**
+     * @return coded data length by its first byte, 9 if it is longer than 8
+     *         bytes
+     */
+    public static int vintSize(byte first) {
+        return Integer.numberOfLeadingZeros(0xFF & first) - (Integer.SIZE - Byte.SIZE - 1);
+    }
+
+    /**
+     * @return length of coded data starting at absolute index of buffer
+     */
+    public static int vintSize(ByteBuffer data, int index) {
+        int size = vintSize(data.get(index));
+        if (size > Long.BYTES) {
+            size = 1;
+            byte snip;
+            while ((snip = data.get(index++)) == 0) {
+                size += Byte.SIZE;
+            }
+            size += getNumberOfLeadingZeros(snip);
+        }
+        return size;
+    }
+
     public static int readLength(byte[] data) {
         if (data.length == 0) {
             throw new IllegalArgumentException("Input data should not be empty");
@@ -178,6 +217,132 @@ public final class EBMLFormatUtil {
         return result;
     }
 
+    /**
+     * Reads coded data as a long without intermediate arrays
+     *
+     * @throws IllegalArgumentException
+     *             if the coded value doesn't fit into a long
+     */
+    public static long readVint(Input in, boolean strip) throws IOException {
+        int snip = 0xFF & in.readByte();
+        // -1 is a reserved code
+        if (snip == 0xFF) {
+            return strip ? -1 : snip;
+        }
+        int size = 0;
+        while (snip == 0) {
+            size += 7;
+            snip = 0xFF & in.readByte();
+        }
+        int lz = Integer.numberOfLeadingZeros(snip) - (Integer.SIZE - Byte.SIZE);
+        size += lz;
+        long value = strip ? snip & (Byte.MAX_VALUE >>> lz) : snip;
+        for (int i = 0; i < size; i++) {
+            if (value >>> (Long.SIZE - Byte.SIZE - 1) != 0) {
+                throw new IllegalArgumentException("EBML coded data doesn't fit into long");
+            }
+            value = value << Byte.SIZE | (0xFF & in.readByte());
+        }
+        return value;
+    }
+
+    /**
+     * Reads coded data at absolute index of buffer, coded data of up to 8 bytes
+     * is read by a single load when buffer has enough bytes
+     *
+     * @throws IllegalArgumentException
+     *             if the coded value doesn't fit into a long
+     */
+    public static long readVint(ByteBuffer data, int index, boolean strip) {
+        int size = vintSize(data.get(index));
+        if (size > Long.BYTES || index > data.limit() - Long.BYTES) {
+            return readVintSlow(data, index, strip);
+        }
+        long word = data.getLong(index);
+        if (data.order() != ByteOrder.BIG_ENDIAN) {
+            word = Long.reverseBytes(word);
+        }
+        long value = word >>> (Long.SIZE - size * Byte.SIZE);
+        if (strip) {
+            // -1 is a reserved code
+            return size == 1 && value == 0xFF ? -1 : value ^ 1L << (7 * size);
+        }
+        return value;
+    }
+
+    /**
+     * Reads count consecutive coded data starting at absolute index of buffer
+     * into values
+     *
+     * @return index following the last read coded data
+     */
+    public static int readVints(ByteBuffer data, int index, long[] values, int offset, int count, boolean strip) {
+        for (int i = offset; i < offset + count; i++) {
+            values[i] = readVint(data, index, strip);
+            index += vintSize(data, index);
+        }
+        return index;
+    }
+
+    private static long readVintSlow(ByteBuffer data, int index, boolean strip) {
+        try {
+            return readVint(new Input() {
+
+                int i = index;
+
+                @Override
+                public byte readByte() throws IOException {
+                    return data.get(i++);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return i >= data.limit();
+                }
+
+            }, strip);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes value as coded data of minimal length
+     *
+     * @return number of bytes written
+     */
+    public static int writeVint(Output out, long value) throws IOException {
+        int length = vintLength(value);
+        if (length > Long.BYTES) {
+            out.writeByte((byte) 0);
+            writeSigned(out, value | Long.MIN_VALUE, Long.BYTES);
+        } else {
+            writeCodeValue(out, value, length);
+        }
+        return length;
+    }
+
+    /**
+     * Writes value as coded data of exactly the given length in bytes
+     *
+     * @throws IllegalArgumentException
+     *             if value can't be coded within the length
+     */
+    public static void writeCodeValue(Output out, long value, int length) throws IOException {
+        if (length < 1 || length > Long.BYTES) {
+            throw new IllegalArgumentException("EBML coded data length " + length + " is out of range");
+        }
+        long marker = 1L << (7 * length);
+        // -1 is a reserved code
+        if (value < 0 || value >= marker || (length == 1 && value == Byte.MAX_VALUE)) {
+            throw new IllegalArgumentException("Value " + value + " can't be coded in " + length + " bytes");
+        }
+        value |= marker;
+        for (int i = (length - 1) * Byte.SIZE; i >= 0; i -= Byte.SIZE) {
+            out.writeByte((byte) (value >>> i));
+        }
+    }
+
     public static int writeCode(Output out, byte[] data) throws IOException {
         if (data.length < 1) {
             out.writeByte(Byte.MIN_VALUE);
@@ -209,33 +374,126 @@ public final class EBMLFormatUtil {
                 overlap = 1;
             }
         }
-        for (int i = overlap; i < data.length; i++) {
-            out.writeByte(data[i]);
-        }
+        writeBytes(out, data, overlap, data.length - overlap);
         return head + data.length + (1 - overlap);
     }
 
-    // TODO implement optimized calculation instead of general one
-    public static int getNumberOfLeadingZeros(byte b) {
-        return getNumberOfLeadingZeros(b, Byte.SIZE);
+    /**
+     * Writes len bytes of data starting at off, in a single block if output
+     * supports it
+     */
+    public static void writeBytes(Output out, byte[] data, int off, int len) throws IOException {
+        if (out instanceof BulkOutput) {
+            ((BulkOutput) out).writeBytes(data, off, len);
+        } else {
+            for (int i = off; i < off + len; i++) {
+                out.writeByte(data[i]);
+            }
+        }
     }
 
-    public static int getNumberOfLeadingZeros(long value, int size) {
-        value &= -1 >>> Long.SIZE - size;
-        if (value == 0) {
-            return size;
+    /**
+     * @return minimal number of bytes holding value in big-endian two's
+     *         complement form, same as BigInteger.toByteArray() length
+     */
+    public static int signedLength(long value) {
+        return (Long.SIZE - Long.numberOfLeadingZeros(value ^ (value >> (Long.SIZE - 1)))) / Byte.SIZE + 1;
+    }
+
+    public static void writeSigned(Output out, long value, int length) throws IOException {
+        for (int i = (length - 1) * Byte.SIZE; i >= 0; i -= Byte.SIZE) {
+            out.writeByte((byte) (value >> i));
         }
-        if (value < 0) {
-            return 0;
+    }
+
+    /**
+     * Reads big-endian two's complement value
+     *
+     * @throws ArithmeticException
+     *             if the value doesn't fit into a long
+     */
+    public static long readSigned(byte[] data, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = shiftSigned(value, data[offset + i], i);
         }
-        int result = 1;
-        for (int c = size / 2; c > 1; c /= 2) {
-            if (value >>> size - c == 0) {
-                result += c;
-                value <<= c;
-            }
+        return value;
+    }
+
+    public static long readSigned(ByteBuffer data) {
+        return readSigned(data, data.position(), data.remaining());
+    }
+
+    /**
+     * Reads big-endian two's complement value at absolute index, buffer
+     * position is not changed
+     */
+    public static long readSigned(ByteBuffer data, int index, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = shiftSigned(value, data.get(index + i), i);
+        }
+        return value;
+    }
+
+    /**
+     * @return view of length bytes at absolute index, buffer position is not
+     *         changed
+     */
+    public static ByteBuffer slice(ByteBuffer data, int index, int length) {
+        ByteBuffer dup = data.duplicate();
+        dup.limit(index + length);
+        dup.position(index);
+        return dup.slice();
+    }
+
+    /**
+     * Converts IEEE-754 bits of binary32 or binary64 data to double
+     *
+     * @param length
+     *            data length in bytes, 0 stands for 0.0
+     * @throws IllegalArgumentException
+     *             if length is not 0, 4 or 8
+     */
+    public static double readBinaryFloat(long bits, int length) {
+        switch (length) {
+        case 0:
+            return 0.0d;
+        case Float.BYTES:
+            return Float.intBitsToFloat((int) bits);
+        case Double.BYTES:
+            return Double.longBitsToDouble(bits);
+        default:
+            throw new IllegalArgumentException("Binary float data length " + length + " should be 0, 4 or 8");
+        }
+    }
+
+    /**
+     * Appends next byte of big-endian two's complement value
+     *
+     * @param index
+     *            index of the byte within the value
+     */
+    public static long shiftSigned(long value, byte b, int index) {
+        if (index == 0) {
+            return b;
+        }
+        long top = value >> (Long.SIZE - Byte.SIZE - 1);
+        if (top != 0 && top != -1) {
+            throw new ArithmeticException("Value out of long range");
+        }
+        return value << Byte.SIZE | (0xFF & b);
+    }
+
+    public static int getNumberOfLeadingZeros(byte b) {
+        return Integer.numberOfLeadingZeros(0xFF & b) - (Integer.SIZE - Byte.SIZE);
+    }
+
+    public static int getNumberOfLeadingZeros(long value, int size) {
+        if (size < Long.SIZE) {
+            value &= (1L << size) - 1;
         }
-        return result - ((int) (value >>> size - 1));
+        return Long.numberOfLeadingZeros(value) - (Long.SIZE - size);
     }
 
 }
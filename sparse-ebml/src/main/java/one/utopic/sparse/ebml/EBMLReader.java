@@ -22,9 +22,12 @@ import static java.util.Objects.requireNonNull;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import one.utopic.abio.api.input.Input;
@@ -33,17 +36,22 @@ import one.utopic.sparse.api.ReadFormat;
 import one.utopic.sparse.api.Reader;
 import one.utopic.sparse.api.exception.SparseReaderException;
 import one.utopic.sparse.ebml.EBMLType.Context;
-import one.utopic.sparse.ebml.format.BigIntegerFormat;
+import one.utopic.sparse.ebml.io.BulkInput;
+import one.utopic.sparse.ebml.io.ByteBufferInput;
 
 public class EBMLReader implements Reader<EBMLType>, Supplier<Event<EBMLType>> {
 
-    protected static class WrappedInput implements Input {
+    protected static class WrappedInput implements BulkInput {
 
         private final Input in;
-        private int read = 0;
+        private final BulkInput bulkIn;
+        private final ByteBufferInput bufferIn;
+        private long position = 0;
 
         public WrappedInput(Input in) {
             this.in = in;
+            this.bulkIn = in instanceof BulkInput ? (BulkInput) in : null;
+            this.bufferIn = in instanceof ByteBufferInput ? (ByteBufferInput) in : null;
         }
 
         @Override
@@ -54,66 +62,188 @@ public class EBMLReader implements Reader<EBMLType>, Supplier<Event<EBMLType>> {
         @Override
         public byte readByte() throws IOException {
             byte b = in.readByte();
-            read++;
+            position++;
             return b;
         }
 
+        @Override
+        public int readBytes(byte[] buf, int off, int len) throws IOException {
+            int i = 0;
+            if (null != bulkIn) {
+                for (int r; i < len && !bulkIn.isFinished(); i += r) {
+                    if ((r = bulkIn.readBytes(buf, off + i, len - i)) < 1) {
+                        break;
+                    }
+                }
+            } else {
+                for (; i < len && !in.isFinished(); i++) {
+                    buf[off + i] = in.readByte();
+                }
+            }
+            position += i;
+            return i;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long i = 0;
+            if (null != bulkIn) {
+                for (long s; i < n && !bulkIn.isFinished(); i += s) {
+                    if ((s = bulkIn.skip(n - i)) < 1) {
+                        break;
+                    }
+                }
+            } else {
+                for (; i < n && !in.isFinished(); i++) {
+                    in.readByte();
+                }
+            }
+            position += i;
+            return i;
+        }
+
+        public long readVint(boolean strip) throws IOException {
+            if (null == bufferIn) {
+                return EBMLFormatUtil.readVint(this, strip);
+            }
+            int start = bufferIn.position();
+            long value = bufferIn.readVint(strip);
+            position += bufferIn.position() - start;
+            return value;
+        }
+
+        public boolean isBuffered() {
+            return null != bufferIn;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public ByteBuffer readSlice(int len) throws IOException {
+            ByteBuffer slice = bufferIn.slice(len);
+            position += slice.remaining();
+            return slice;
+        }
+
     }
 
+    private static final int BUFFER_SIZE = 8192;
+    private static final int INITIAL_DEPTH = 16;
+
     private final WrappedInput in;
-    private final LinkedList<EBMLType> typeStack = new LinkedList<>();
-    private final LinkedList<Integer> lengthStack = new LinkedList<>();
-    private final LinkedList<EBMLEvent> pendingEvents = new LinkedList<>();
     private final Context rootTypeContext;
 
+    private EBMLType[] typeStack = new EBMLType[INITIAL_DEPTH];
+    private long[] endStack = new long[INITIAL_DEPTH];
+    private int depth = 0;
+
+    private Map<Object, Object> sessionState;
+
     public EBMLReader(Input in, EBMLType.Context context) {
         this.in = new WrappedInput(requireNonNull(in));
         this.rootTypeContext = requireNonNull(context);
     }
 
+    /**
+     * Creates reader over buffer content, formats receive payloads as read-only
+     * slices of it
+     */
+    public EBMLReader(ByteBuffer buffer, EBMLType.Context context) {
+        this(new ByteBufferInput(requireNonNull(buffer)), context);
+    }
+
+    /**
+     * @return state kept by a format for the stream of this reader, created by
+     *         the factory on first access
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getSessionState(Object key, Function<Object, ? extends T> factory) {
+        if (null == this.sessionState) {
+            this.sessionState = new HashMap<>();
+        }
+        return (T) this.sessionState.computeIfAbsent(key, factory);
+    }
+
     @Override
     public boolean hasNext() {
-        return !in.isFinished() || !typeStack.isEmpty() || !pendingEvents.isEmpty();
+        return !in.isFinished() || depth > 0;
     }
 
     @Override
     public EBMLEvent next() throws SparseReaderException {
-        advanceEnd();
-        if (!pendingEvents.isEmpty()) {
-            return pendingEvents.poll();
+        if (depth > 0) {
+            long remain = endStack[depth - 1] - in.getPosition();
+            if (0 == remain) {
+                EBMLType type = typeStack[--depth];
+                typeStack[depth] = null;
+                return EBMLEvent.end(type);
+            } else if (remain < 0) {
+                throw new SparseReaderException("Frame boundary violation while reading " + remain);
+            }
         }
         try {
-            EBMLCode code;
+            long code;
             try {
-                code = new EBMLCode(EBMLFormatUtil.readCode(in, false));
+                code = in.readVint(false);
             } catch (Exception e) {
                 throw new IllegalStateException("EBML code reading error: " + e.getMessage(), e);
             }
 
             EBMLType type;
-            if (typeStack.isEmpty()) {
+            if (depth == 0) {
                 type = rootTypeContext.getType(code);
             } else {
-                type = typeStack.peek().getContext().getType(code);
+                type = typeStack[depth - 1].getContext().getType(code);
             }
             type = resolveTypeCode(type, code);
 
-            int length;
+            long length;
             try {
-                length = BigIntegerFormat.INSTANCE.readFormat(EBMLFormatUtil.readCode(in, true)).intValueExact();
+                length = in.readVint(true);
             } catch (Exception e) {
                 throw new IllegalStateException("EBML length reading error: " + e.getMessage(), e);
             }
 
-            advance();
-            lengthStack.push(length);
-            typeStack.push(type);
-            return new EBMLEvent(type, EBMLEvent.CommonEventType.BEGIN);
+            pushFrame(type, length);
+            return EBMLEvent.begin(type);
         } catch (Exception e) {
             throw new SparseReaderException(e);
         }
     }
 
+    /**
+     * Skips the remaining data of the current element, next event will be its
+     * END
+     */
+    public void skip() throws SparseReaderException {
+        if (depth == 0) {
+            throw new SparseReaderException("Nothing to skip");
+        }
+        long remain = remaining();
+        try {
+            if (remain > 0 && in.skip(remain) < remain) {
+                throw new SparseReaderException("Input finished while skipping " + typeStack[depth - 1]);
+            }
+        } catch (IOException e) {
+            throw new SparseReaderException(e);
+        }
+    }
+
+    /**
+     * Skips the current element with all of its children
+     *
+     * @return END event of the skipped element
+     */
+    public EBMLEvent skipSubtree() throws SparseReaderException {
+        skip();
+        return next();
+    }
+
+    protected EBMLType resolveTypeCode(EBMLType type, long code) throws SparseReaderException {
+        return null == type ? resolveTypeCode(type, new EBMLCode(code)) : type;
+    }
+
     protected EBMLType resolveTypeCode(EBMLType type, EBMLCode code) throws SparseReaderException {
         if (null == type) {
             throw new SparseReaderException("Unknown EBML code: " + code);
@@ -121,28 +251,21 @@ public class EBMLReader implements Reader<EBMLType>, Supplier<Event<EBMLType>> {
         return type;
     }
 
-    private void advanceEnd() throws SparseReaderException {
-        ListIterator<Integer> li = lengthStack.listIterator();
-        while (li.hasNext()) {
-            int remain = li.next();
-            if (remain > 0) {
-                break;
-            } else if (0 == remain) {
-                pendingEvents.add(new EBMLEvent(typeStack.poll(), EBMLEvent.CommonEventType.END));
-                li.remove();
-                continue;
-            } else {
-                throw new SparseReaderException("Frame boundary violation while reading " + remain);
-            }
+    private void pushFrame(EBMLType type, long length) throws SparseReaderException {
+        long end = in.getPosition() + length;
+        if (length < 0 || (depth > 0 && end > endStack[depth - 1])) {
+            throw new SparseReaderException("Frame boundary violation while reading " + type + " of length " + length);
         }
+        if (depth == endStack.length) {
+            endStack = Arrays.copyOf(endStack, depth << 1);
+            typeStack = Arrays.copyOf(typeStack, depth << 1);
+        }
+        endStack[depth] = end;
+        typeStack[depth++] = type;
     }
 
-    private void advance() throws SparseReaderException {
-        ListIterator<Integer> li = lengthStack.listIterator();
-        while (li.hasNext()) {
-            li.set(li.next() - in.read);
-        }
-        in.read = 0;
+    private long remaining() {
+        return endStack[depth - 1] - in.getPosition();
     }
 
     public static abstract interface EBMLReadFormat<O> extends ReadFormat<EBMLType, EBMLReader, O> {
@@ -153,6 +276,12 @@ public class EBMLReader implements Reader<EBMLType>, Supplier<Event<EBMLType>> {
         }
 
         public abstract O readFormat(byte[] data);
+
+        default O readFormat(ByteBuffer data) {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            return readFormat(bytes);
+        }
     }
 
     @Override
@@ -160,18 +289,140 @@ public class EBMLReader implements Reader<EBMLType>, Supplier<Event<EBMLType>> {
         return hasNext() ? next() : null;
     }
 
+    /**
+     * Opens current element data as a stream limited by the element boundary.
+     * Closing the stream skips unread data, so it should be closed before
+     * reading the next event.
+     */
+    public InputStream openStream() throws SparseReaderException {
+        return new PayloadInputStream(depth == 0 ? Long.MAX_VALUE : endStack[depth - 1]);
+    }
+
+    private final class PayloadInputStream extends InputStream {
+
+        private final long end;
+        private boolean closed = false;
+
+        private PayloadInputStream(long end) {
+            this.end = end;
+        }
+
+        private long remain() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            return in.isFinished() ? 0 : end - in.getPosition();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return remain() > 0 ? 0xFF & in.readByte() : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            long remain = remain();
+            if (remain <= 0) {
+                return -1;
+            }
+            int read = in.readBytes(b, off, (int) Math.min(len, remain));
+            return read > 0 ? read : -1;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return in.skip(Math.min(n, remain()));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                long remain = end - in.getPosition();
+                if (end != Long.MAX_VALUE && remain > 0 && in.skip(remain) < remain) {
+                    throw new IOException("Input finished before the end of element");
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Reads current element data as big-endian two's complement long without
+     * intermediate allocations
+     */
+    public long readLong() throws SparseReaderException {
+        long length = depth == 0 ? Long.MAX_VALUE : remaining();
+        try {
+            long value = 0;
+            for (int i = 0; i < length && !in.isFinished(); i++) {
+                value = EBMLFormatUtil.shiftSigned(value, in.readByte(), i);
+            }
+            return value;
+        } catch (Exception e) {
+            throw new SparseReaderException(e);
+        }
+    }
+
+    /**
+     * Reads current element data as big-endian two's complement int without
+     * intermediate allocations
+     */
+    public int readInt() throws SparseReaderException {
+        try {
+            return Math.toIntExact(readLong());
+        } catch (ArithmeticException e) {
+            throw new SparseReaderException(e);
+        }
+    }
+
+    /**
+     * Reads current element data as IEEE-754 binary32 or binary64 float
+     * without intermediate allocations
+     */
+    public double readDouble() throws SparseReaderException {
+        long length = depth == 0 ? Long.MAX_VALUE : remaining();
+        try {
+            long bits = 0;
+            int i = 0;
+            for (; i < length && !in.isFinished(); i++) {
+                if (i == Long.BYTES) {
+                    throw new IllegalArgumentException("Binary float data is longer than " + Long.BYTES + " bytes");
+                }
+                bits = bits << Byte.SIZE | (0xFF & in.readByte());
+            }
+            return EBMLFormatUtil.readBinaryFloat(bits, i);
+        } catch (Exception e) {
+            throw new SparseReaderException(e);
+        }
+    }
+
+    /**
+     * Reads current element data as IEEE-754 float, binary64 data is narrowed
+     */
+    public float readFloat() throws SparseReaderException {
+        return (float) readDouble();
+    }
+
     protected <O> O read(EBMLReadFormat<O> ebmlReadFormat) throws SparseReaderException {
-        if (lengthStack.isEmpty()) {
+        if (depth == 0) {
             return readVarLen(ebmlReadFormat);
         }
         try {
-            int length = lengthStack.peek();
-            byte[] data = new byte[length];
-            for (int i = 0; i < length && !in.isFinished(); i++) {
-                data[i] = in.readByte();
+            long remain = remaining();
+            if (remain > Integer.MAX_VALUE) {
+                throw new SparseReaderException(typeStack[depth - 1] + " of " + remain + " bytes is too large to be read at once, use openStream()");
             }
-            int read = in.read;
-            advance();
+            int length = (int) remain;
+            if (in.isBuffered()) {
+                ByteBuffer data = in.readSlice(length);
+                return ebmlReadFormat.readFormat(data);
+            }
+            byte[] data = new byte[length];
+            int read = in.readBytes(data, 0, length);
             return read == length ? ebmlReadFormat.readFormat(data) : ebmlReadFormat.readFormat(Arrays.copyOf(data, read));
         } catch (Exception e) {
             throw new SparseReaderException(e);
@@ -179,11 +430,19 @@ public class EBMLReader implements Reader<EBMLType>, Supplier<Event<EBMLType>> {
     }
 
     protected <O> O readVarLen(EBMLReadFormat<O> ebmlReadFormat) throws SparseReaderException {
+        if (in.isBuffered()) {
+            try {
+                ByteBuffer data = in.readSlice(Integer.MAX_VALUE);
+                return ebmlReadFormat.readFormat(data);
+            } catch (Exception e) {
+                throw new SparseReaderException(e);
+            }
+        }
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            while (!in.isFinished()) {
-                baos.write(in.readByte());
+            byte[] buf = new byte[BUFFER_SIZE];
+            for (int r; !in.isFinished() && (r = in.readBytes(buf, 0, buf.length)) > 0;) {
+                baos.write(buf, 0, r);
             }
-            advance();
             return ebmlReadFormat.readFormat(baos.toByteArray());
         } catch (Exception e) {
             throw new SparseReaderException(e);
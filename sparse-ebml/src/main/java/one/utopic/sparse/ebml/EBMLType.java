@@ -33,6 +33,11 @@ public interface EBMLType {
                 return null;
             }
 
+            @Override
+            public EBMLType getType(long code) {
+                return null;
+            }
+
             @Override
             public boolean contains(EBMLType type) {
                 return false;
@@ -47,6 +52,15 @@ public interface EBMLType {
 
         EBMLType getType(EBMLCode code);
 
+        /**
+         * Resolves type by code packed into a long (see
+         * {@link EBMLCode#longValue()}), implementations should override it
+         * with an allocation free lookup
+         */
+        default EBMLType getType(long code) {
+            return getType(new EBMLCode(code));
+        }
+
         boolean contains(EBMLType type);
 
         boolean is(Context context);
@@ -18,12 +18,17 @@
  */
 package one.utopic.sparse.ebml;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.math.BigInteger;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import one.utopic.abio.api.output.Output;
 import one.utopic.sparse.api.Event;
@@ -34,37 +39,58 @@ import one.utopic.sparse.api.exception.SparseWriterException;
 import one.utopic.sparse.ebml.EBMLWriter.EBMLWriteFormat.Writable;
 import one.utopic.sparse.ebml.EBMLWriter.Frame.Format;
 import one.utopic.sparse.ebml.EBMLWriter.Frame.Structure;
+import one.utopic.sparse.ebml.format.BinaryDoubleFormat;
+import one.utopic.sparse.ebml.format.BinaryFloatFormat;
+import one.utopic.sparse.ebml.format.LongFormat;
+import one.utopic.sparse.ebml.io.ByteArrayOutput;
+import one.utopic.sparse.ebml.io.SeekableOutput;
 
 public class EBMLWriter implements Writer<EBMLType>, Consumer<Event<EBMLType>> {
 
     protected static interface Frame {
 
-        int getSize();
+        long getSize();
 
         void write(Output out) throws IOException;
 
         static final class Structure implements Frame {
 
+            private static final int PATCHED_SIZE_LENGTH = Long.BYTES;
+
             private final EBMLType type;
             private final LinkedList<Frame> children = new LinkedList<>();
 
-            private int dataSize = -1;
-            private int fullSize = -1;
+            private long dataSize = -1;
+            private long fullSize = -1;
+            private long declaredSize = -1;
+            private long streamedSize = -1;
+            private long sizePosition = -1;
 
             public Structure(EBMLType type) {
                 this.type = Objects.requireNonNull(type);
             }
 
+            /**
+             * @return true if header is already written out and the children are
+             *         written as soon as they are complete
+             */
+            public boolean isStreamed() {
+                return this.streamedSize != -1;
+            }
+
             @Override
-            public int getSize() {
+            public long getSize() {
                 if (this.fullSize == -1) {
-                    return this.fullSize = getDataSize() + EBMLFormatUtil.codeLength(BigInteger.valueOf(getDataSize()).toByteArray())
-                            + this.type.getEBMLCode().getSize();
+                    long sizeLength = this.sizePosition != -1 ? PATCHED_SIZE_LENGTH : EBMLFormatUtil.vintLength(getDataSize());
+                    return this.fullSize = getDataSize() + sizeLength + this.type.getEBMLCode().getSize();
                 }
                 return this.fullSize;
             }
 
-            public int getDataSize() {
+            public long getDataSize() {
+                if (isStreamed()) {
+                    return this.declaredSize;
+                }
                 if (this.dataSize == -1) {
                     this.dataSize = 0;
                     for (Frame frame : this.children) {
@@ -76,27 +102,52 @@ public class EBMLWriter implements Writer<EBMLType>, Consumer<Event<EBMLType>> {
 
             @Override
             public void write(Output out) throws IOException {
-                this.type.getEBMLCode().write(out);
-                EBMLFormatUtil.writeCode(out, BigInteger.valueOf(getDataSize()).toByteArray());
+                writeHeader(out);
                 for (Frame frame : this.children) {
                     frame.write(out);
                 }
             }
 
+            private void writeHeader(Output out) throws IOException {
+                this.type.getEBMLCode().write(out);
+                EBMLFormatUtil.writeVint(out, getDataSize());
+            }
+
+            private void writePatchableHeader(SeekableOutput out) throws IOException {
+                this.type.getEBMLCode().write(out);
+                this.sizePosition = out.position();
+                EBMLFormatUtil.writeCodeValue(out, 0, PATCHED_SIZE_LENGTH);
+            }
+
+            private void patchSize(SeekableOutput out) throws IOException {
+                long position = out.position();
+                out.position(this.sizePosition);
+                EBMLFormatUtil.writeCodeValue(out, this.streamedSize, PATCHED_SIZE_LENGTH);
+                out.position(position);
+                this.declaredSize = this.streamedSize;
+            }
+
+            private void stream(long size) throws SparseWriterException {
+                this.streamedSize += size;
+                if (this.declaredSize != -1 && this.streamedSize > this.declaredSize) {
+                    throw new SparseWriterException(this.type + " data exceeds declared size " + this.declaredSize);
+                }
+            }
+
         }
 
         static class Format implements Frame {
 
             private final EBMLWriteFormat.Writable writable;
 
-            private int size = -1;
+            private long size = -1;
 
             public Format(Writable writable) {
                 this.writable = writable;
             }
 
             @Override
-            public int getSize() {
+            public long getSize() {
                 if (this.size == -1) {
                     this.size = this.writable.getSize();
                 }
@@ -111,20 +162,175 @@ public class EBMLWriter implements Writer<EBMLType>, Consumer<Event<EBMLType>> {
         }
     }
 
+    /**
+     * Encodes elements into a single buffer reserving fixed length size fields,
+     * which are shrunk to their minimal length in one pass when the root
+     * element ends
+     */
+    private static final class Arena {
+
+        private static final int SIZE_LENGTH = Long.BYTES;
+        private static final int INITIAL_DEPTH = 16;
+        private static final int INITIAL_COUNT = 64;
+
+        private final ByteArrayOutput buffer;
+
+        // size fields of all elements in document order
+        private int[] sizeOffsets = new int[INITIAL_COUNT];
+        private long[] dataSizes = new long[INITIAL_COUNT];
+        private int count = 0;
+
+        // open elements
+        private EBMLType[] types = new EBMLType[INITIAL_DEPTH];
+        private int[] records = new int[INITIAL_DEPTH];
+        private long[] declaredSizes = new long[INITIAL_DEPTH];
+        private int[] shrinks = new int[INITIAL_DEPTH];
+        private int depth = 0;
+
+        private Arena(ByteArrayOutput buffer) {
+            this.buffer = Objects.requireNonNull(buffer);
+            this.buffer.reset();
+        }
+
+        private boolean isEmpty() {
+            return depth == 0;
+        }
+
+        private EBMLType head() {
+            return depth == 0 ? null : types[depth - 1];
+        }
+
+        private void open(EBMLType type, long declaredSize) throws IOException {
+            if (count == sizeOffsets.length) {
+                sizeOffsets = Arrays.copyOf(sizeOffsets, count << 1);
+                dataSizes = Arrays.copyOf(dataSizes, count << 1);
+            }
+            if (depth == types.length) {
+                types = Arrays.copyOf(types, depth << 1);
+                records = Arrays.copyOf(records, depth << 1);
+                declaredSizes = Arrays.copyOf(declaredSizes, depth << 1);
+                shrinks = Arrays.copyOf(shrinks, depth << 1);
+            }
+            type.getEBMLCode().write(buffer);
+            sizeOffsets[count] = buffer.size();
+            EBMLFormatUtil.writeCodeValue(buffer, 0, SIZE_LENGTH);
+            types[depth] = type;
+            records[depth] = count++;
+            declaredSizes[depth] = declaredSize;
+            shrinks[depth++] = 0;
+        }
+
+        private void write(EBMLWriteFormat.Writable w) throws IOException {
+            if (buffer.size() != sizeOffsets[records[depth - 1]] + SIZE_LENGTH) {
+                throw new SparseWriterException("Dirty Structure frame " + types[depth - 1]);
+            }
+            w.writeFormat(buffer);
+        }
+
+        /**
+         * @return true if the root element is closed
+         */
+        private boolean close(EBMLType type) throws SparseWriterException {
+            if (depth == 0) {
+                throw new SparseWriterException("Nothing to end");
+            }
+            if (!types[depth - 1].equals(type)) {
+                throw new SparseWriterException("Can't close " + type + " before " + types[depth - 1]);
+            }
+            int record = records[--depth];
+            long dataSize = buffer.size() - sizeOffsets[record] - SIZE_LENGTH - shrinks[depth];
+            if (declaredSizes[depth] != -1 && declaredSizes[depth] != dataSize) {
+                throw new SparseWriterException(type + " data size " + dataSize + " doesn't match declared size " + declaredSizes[depth]);
+            }
+            dataSizes[record] = dataSize;
+            types[depth] = null;
+            if (depth > 0) {
+                shrinks[depth - 1] += shrinks[depth] + SIZE_LENGTH - EBMLFormatUtil.vintLength(dataSize);
+            }
+            return depth == 0;
+        }
+
+        private void flush(Output out) throws IOException {
+            int src = 0, dst = 0;
+            for (int i = 0; i < count; i++) {
+                int offset = sizeOffsets[i];
+                buffer.move(src, dst, offset - src);
+                dst += offset - src;
+                int length = EBMLFormatUtil.vintLength(dataSizes[i]);
+                buffer.position(dst);
+                EBMLFormatUtil.writeCodeValue(buffer, dataSizes[i], length);
+                dst += length;
+                src = offset + SIZE_LENGTH;
+            }
+            buffer.move(src, dst, buffer.size() - src);
+            dst += buffer.size() - src;
+            EBMLFormatUtil.writeBytes(out, buffer.array(), 0, dst);
+            buffer.reset();
+            count = 0;
+        }
+
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
     private final Output out;
+    private final SeekableOutput seekableOut;
+    private final Arena arena;
 
     private final LinkedList<Frame.Structure> frameStack = new LinkedList<>();
 
+    private Map<Object, Object> sessionState;
+
+    /**
+     * Creates writer which keeps open elements in memory and writes them out
+     * with minimal size fields once the root element ends, regardless of the
+     * output type
+     */
     public EBMLWriter(Output out) {
+        this(out, null, null);
+    }
+
+    /**
+     * Creates writer which encodes each root element into the buffer without
+     * building a frame tree and writes it out once the root element ends. The
+     * buffer keeps its capacity, so it can be reused by subsequent writers.
+     */
+    public EBMLWriter(Output out, ByteArrayOutput buffer) {
+        this(out, null, new Arena(buffer));
+    }
+
+    private EBMLWriter(Output out, SeekableOutput seekableOut, Arena arena) {
         this.out = out;
+        this.seekableOut = seekableOut;
+        this.arena = arena;
+    }
+
+    /**
+     * Creates writer which writes element headers immediately, reserving 8
+     * bytes for the size which is patched in place when the element ends, so
+     * only the open elements are kept in memory. Size fields are not minimal,
+     * so output differs from the one of {@link #EBMLWriter(Output)}.
+     */
+    public static EBMLWriter seekable(SeekableOutput out) {
+        return new EBMLWriter(out, out, null);
     }
 
     @Override
     public void accept(Event<EBMLType> event) throws SparseWriterException {
         EBMLType ebmlType = Objects.requireNonNull(event.get());
         if (CommonEventType.BEGIN.equals(event.getType())) {
-            openFrame(ebmlType);
+            openFrame(ebmlType, -1);
         } else if (CommonEventType.END.equals(event.getType())) {
+            if (null != this.arena) {
+                try {
+                    if (this.arena.close(ebmlType)) {
+                        this.arena.flush(this.out);
+                    }
+                } catch (IOException e) {
+                    throw new SparseWriterException(e);
+                }
+                return;
+            }
             Frame.Structure frame = closeFrame(ebmlType);
             if (null != frame) {
                 try {
@@ -138,15 +344,65 @@ public class EBMLWriter implements Writer<EBMLType>, Consumer<Event<EBMLType>> {
         }
     }
 
-    private void openFrame(EBMLType ebmlType) throws SparseWriterException {
+    /**
+     * Begins an element of the declared data size, to be ended with a regular
+     * END event. If all enclosing elements are declared too, the header is
+     * written out immediately and each child is written as soon as it ends, so
+     * only the open elements are kept in memory.
+     */
+    public void begin(EBMLType ebmlType, long dataSize) throws SparseWriterException {
+        if (dataSize < 0) {
+            throw new SparseWriterException("Negative data size " + dataSize + " declared for " + ebmlType);
+        }
+        openFrame(Objects.requireNonNull(ebmlType), dataSize);
+    }
+
+    private void openFrame(EBMLType ebmlType, long dataSize) throws SparseWriterException {
+        if (null != this.arena) {
+            EBMLType headType = this.arena.head();
+            if (headType != null && !headType.getContext().contains(ebmlType)) {
+                throw new SparseWriterException("No type " + ebmlType + " found in context " + headType.getContext());
+            }
+            try {
+                this.arena.open(ebmlType, dataSize);
+            } catch (IOException e) {
+                throw new SparseWriterException(e);
+            }
+            return;
+        }
         Frame.Structure headFrame = this.frameStack.peek();
         if (headFrame != null && !headFrame.type.getContext().contains(ebmlType)) {
             throw new SparseWriterException("No type " + ebmlType + " found in context " + headFrame.type.getContext());
         }
-        this.frameStack.push(newStructureFrame(ebmlType));
+        Frame.Structure frame = newStructureFrame(ebmlType);
+        if (headFrame == null || headFrame.isStreamed()) {
+            try {
+                if (dataSize != -1) {
+                    frame.streamedSize = 0;
+                    frame.declaredSize = dataSize;
+                    frame.writeHeader(this.out);
+                } else if (this.seekableOut != null) {
+                    frame.streamedSize = 0;
+                    frame.writePatchableHeader(this.seekableOut);
+                }
+            } catch (IOException e) {
+                throw new SparseWriterException(e);
+            }
+        } else {
+            frame.declaredSize = dataSize;
+        }
+        this.frameStack.push(frame);
     }
 
     private <O> void openFrame(EBMLWriteFormat.Writable w) throws SparseWriterException {
+        if (null != this.arena && !this.arena.isEmpty()) {
+            try {
+                this.arena.write(w);
+            } catch (IOException e) {
+                throw new SparseWriterException(e);
+            }
+            return;
+        }
         Frame.Structure headFrame = this.frameStack.peek();
         if (headFrame == null) {
             try {
@@ -154,6 +410,16 @@ public class EBMLWriter implements Writer<EBMLType>, Consumer<Event<EBMLType>> {
             } catch (IOException e) {
                 throw new SparseWriterException(e);
             }
+        } else if (headFrame.isStreamed()) {
+            if (headFrame.streamedSize != 0) {
+                throw new SparseWriterException("Dirty Structure frame " + headFrame);
+            }
+            headFrame.stream(w.getSize());
+            try {
+                w.writeFormat(this.out);
+            } catch (IOException e) {
+                throw new SparseWriterException(e);
+            }
         } else if (headFrame.children.isEmpty()) {
             headFrame.children.add(newFormatFrame(w));
         } else {
@@ -175,11 +441,27 @@ public class EBMLWriter implements Writer<EBMLType>, Consumer<Event<EBMLType>> {
             Frame.Structure headFrame = it.next();
             if (headFrame.type.equals(ebmlType)) {
                 it.remove();
-                if (it.hasNext()) {
-                    it.next().children.add(headFrame);
+                long dataSize = headFrame.isStreamed() ? headFrame.streamedSize : headFrame.getDataSize();
+                if (headFrame.declaredSize != -1 && headFrame.declaredSize != dataSize) {
+                    throw new SparseWriterException(
+                            ebmlType + " data size " + dataSize + " doesn't match declared size " + headFrame.declaredSize);
+                }
+                if (headFrame.sizePosition != -1) {
+                    try {
+                        headFrame.patchSize(this.seekableOut);
+                    } catch (IOException e) {
+                        throw new SparseWriterException(e);
+                    }
+                }
+                Frame.Structure parentFrame = it.hasNext() ? it.next() : null;
+                if (parentFrame != null && !parentFrame.isStreamed()) {
+                    parentFrame.children.add(headFrame);
                     return null;
                 }
-                return headFrame;
+                if (parentFrame != null) {
+                    parentFrame.stream(headFrame.getSize());
+                }
+                return headFrame.isStreamed() ? null : headFrame;
             } else {
                 throw new SparseWriterException("Can't close " + ebmlType + " before " + headFrame.type);
             }
@@ -187,8 +469,89 @@ public class EBMLWriter implements Writer<EBMLType>, Consumer<Event<EBMLType>> {
         throw new SparseWriterException("Nothing to end");
     }
 
+    /**
+     * Writes current element data as big-endian two's complement long
+     */
+    public void writeLong(long data) throws SparseWriterException {
+        openFrame(LongFormat.INSTANCE.getWritable(data));
+    }
+
+    /**
+     * Writes current element data as big-endian two's complement int
+     */
+    public void writeInt(int data) throws SparseWriterException {
+        openFrame(LongFormat.INSTANCE.getWritable(data));
+    }
+
+    /**
+     * Writes current element data as IEEE-754 binary64 float
+     */
+    public void writeDouble(double data) throws SparseWriterException {
+        openFrame(BinaryDoubleFormat.INSTANCE.getWritable(data));
+    }
+
+    /**
+     * Writes current element data as IEEE-754 binary32 float
+     */
+    public void writeFloat(float data) throws SparseWriterException {
+        openFrame(BinaryFloatFormat.INSTANCE.getWritable(data));
+    }
+
+    /**
+     * Writes current element data, writables are written out in the order they
+     * are passed to the writer
+     */
+    public void write(Writable data) throws SparseWriterException {
+        openFrame(Objects.requireNonNull(data));
+    }
+
+    /**
+     * @return state kept by a format for the stream of this writer, created by
+     *         the factory on first access
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getSessionState(Object key, Function<Object, ? extends T> factory) {
+        if (null == this.sessionState) {
+            this.sessionState = new HashMap<>();
+        }
+        return (T) this.sessionState.computeIfAbsent(key, factory);
+    }
+
+    /**
+     * Writes current element data of the given size from the stream. The stream
+     * is read once the element is written out, so it has to stay open until
+     * then.
+     */
+    public void writeStream(InputStream data, long size) throws SparseWriterException {
+        Objects.requireNonNull(data);
+        if (size < 0) {
+            throw new SparseWriterException("Negative stream size " + size);
+        }
+        openFrame(new EBMLWriteFormat.Writable() {
+
+            @Override
+            public void writeFormat(Output out) throws IOException {
+                byte[] buf = new byte[(int) Math.min(size, BUFFER_SIZE)];
+                for (long remain = size; remain > 0;) {
+                    int read = data.read(buf, 0, (int) Math.min(remain, buf.length));
+                    if (read < 0) {
+                        throw new EOFException("Stream finished " + remain + " bytes before declared size " + size);
+                    }
+                    EBMLFormatUtil.writeBytes(out, buf, 0, read);
+                    remain -= read;
+                }
+            }
+
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+        });
+    }
+
     public boolean isEmpty() {
-        return frameStack.isEmpty();
+        return frameStack.isEmpty() && (null == arena || arena.isEmpty());
     }
 
     public static abstract interface EBMLWriteFormat<O> extends WriteFormat<EBMLType, EBMLWriter, O> {
@@ -204,7 +567,7 @@ public class EBMLWriter implements Writer<EBMLType>, Consumer<Event<EBMLType>> {
 
             void writeFormat(Output out) throws IOException;
 
-            int getSize();
+            long getSize();
 
         }
 
@@ -0,0 +1,43 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.codec;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class to get an EBMLFormat generated at compile time by the
+ * sparse-ebml-codegen annotation processor.
+ * <p>
+ * Generated format is named after the class with EBMLFormat suffix (nested
+ * class names are joined with '_'), placed in the same package and exposes an
+ * INSTANCE. Class must have a non-private no-arg constructor, its
+ * {@link EBMLField} annotated fields are written as child elements of the
+ * element holding the object, in declaration order. Absent fields are left
+ * with their initial values on read, unknown elements are skipped.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface EBMLCodec {
+
+}
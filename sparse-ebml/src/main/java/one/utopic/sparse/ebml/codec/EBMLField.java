@@ -0,0 +1,54 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.codec;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import one.utopic.sparse.ebml.EBMLFormat;
+
+/**
+ * Maps a field of an {@link EBMLCodec} class to a child element.
+ * <p>
+ * Primitive integers and booleans are written as signed integers, float and
+ * double as binary floats, String as UTF-8, byte[] as binary data, other
+ * {@link EBMLCodec} classes with their generated formats. Null values are not
+ * written. Private fields are accessed with bean getter and setter.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface EBMLField {
+
+    /**
+     * @return element id with length marker bits, up to 4 bytes
+     */
+    long id();
+
+    /**
+     * @return format class with a public no-arg constructor to use instead of
+     *         the default mapping
+     */
+    @SuppressWarnings("rawtypes")
+    Class<? extends EBMLFormat> format() default EBMLFormat.class;
+
+}
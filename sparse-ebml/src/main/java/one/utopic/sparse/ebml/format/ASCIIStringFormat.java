@@ -18,27 +18,74 @@
  */
 package one.utopic.sparse.ebml.format;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
+import one.utopic.abio.api.output.Output;
 import one.utopic.sparse.ebml.EBMLFormat;
 
 /**
- * Writes and reads UTF8 string data
+ * Writes and reads ASCII string data. Characters out of ASCII range are
+ * written as '?' like {@link String#getBytes(Charset)} does and read back as
+ * the replacement character.
  */
 public class ASCIIStringFormat implements EBMLFormat<String> {
 
     public static final ASCIIStringFormat INSTANCE = new ASCIIStringFormat();
 
-    private static final Charset CHARSET = Charset.forName("ASCII");
+    private static final Charset CHARSET = StandardCharsets.US_ASCII;
+
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final StringCache cache;
+
+    public ASCIIStringFormat() {
+        this(null);
+    }
+
+    /**
+     * @param cache
+     *            cache of decoded values, may be shared between formats of the
+     *            same charset
+     */
+    public ASCIIStringFormat(StringCache cache) {
+        this.cache = cache;
+    }
 
     @Override
     public String readFormat(byte[] data) {
         if (data.length < 1) {
             return "";
         }
+        if (null != cache) {
+            return cache.get(ByteBuffer.wrap(data), ASCIIStringFormat::decode);
+        }
         return new String(data, CHARSET);
     }
 
+    @Override
+    public String readFormat(ByteBuffer data) {
+        if (data.remaining() < 1) {
+            return "";
+        }
+        return null == cache ? decode(data) : cache.get(data, ASCIIStringFormat::decode);
+    }
+
+    private static String decode(ByteBuffer data) {
+        int length = data.remaining();
+        if (data.hasArray()) {
+            return new String(data.array(), data.arrayOffset() + data.position(), length, CHARSET);
+        }
+        char[] chars = new char[length];
+        for (int i = 0, p = data.position(); i < length; i++, p++) {
+            byte b = data.get(p);
+            chars[i] = b < 0 ? REPLACEMENT : (char) b;
+        }
+        return new String(chars);
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName();
@@ -46,6 +93,48 @@ public class ASCIIStringFormat implements EBMLFormat<String> {
 
     @Override
     public Writable getWritable(String data) {
-        return BytesFormat.INSTANCE.getWritable(data.getBytes(CHARSET));
+        int size = encodedLength(data);
+        return new Writable() {
+
+            @Override
+            public void writeFormat(Output out) throws IOException {
+                encode(out, data);
+            }
+
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+        };
+    }
+
+    /**
+     * @return length of ASCII encoded data without encoding it
+     */
+    public static int encodedLength(CharSequence data) {
+        int length = data.length();
+        for (int i = 0, n = data.length() - 1; i < n; i++) {
+            // surrogate pair is replaced by a single character
+            if (Character.isHighSurrogate(data.charAt(i)) && Character.isLowSurrogate(data.charAt(i + 1))) {
+                length--;
+                i++;
+            }
+        }
+        return length;
+    }
+
+    public static void encode(Output out, CharSequence data) throws IOException {
+        for (int i = 0, n = data.length(); i < n; i++) {
+            char c = data.charAt(i);
+            if (c < 0x80) {
+                out.writeByte((byte) c);
+            } else {
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(data.charAt(i + 1))) {
+                    i++;
+                }
+                out.writeByte((byte) '?');
+            }
+        }
     }
 }
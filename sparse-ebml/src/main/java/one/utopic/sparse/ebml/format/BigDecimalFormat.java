@@ -26,6 +26,7 @@ import static one.utopic.sparse.ebml.EBMLFormatUtil.writeCode;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import one.utopic.abio.api.output.Output;
@@ -75,7 +76,7 @@ public class BigDecimalFormat implements EBMLFormat<BigDecimal> {
             }
 
             @Override
-            public int getSize() {
+            public long getSize() {
                 return codeLength(scaleRaw) + valueRaw.length;
             }
 
@@ -87,6 +88,10 @@ public class BigDecimalFormat implements EBMLFormat<BigDecimal> {
         if (data.length < 1) {
             return BigDecimal.ZERO;
         }
+        LongDecimal compact = LongDecimalFormat.decode(ByteBuffer.wrap(data));
+        if (null != compact) {
+            return compact.toBigDecimal();
+        }
         try {
             byte[] scaleRaw = readCodeStrip(data);
             long scale = new BigInteger(scaleRaw).longValueExact();
@@ -98,12 +103,28 @@ public class BigDecimalFormat implements EBMLFormat<BigDecimal> {
         }
     }
 
+    @Override
+    public BigDecimal readFormat(ByteBuffer data) {
+        if (!data.hasRemaining()) {
+            return BigDecimal.ZERO;
+        }
+        LongDecimal compact = LongDecimalFormat.decode(data);
+        if (null != compact) {
+            return compact.toBigDecimal();
+        }
+        return EBMLFormat.super.readFormat(data);
+    }
+
     @Override
     public Writable getWritable(BigDecimal data) {
+        BigInteger unscaledValue = data.unscaledValue();
+        if (unscaledValue.bitLength() < Long.SIZE) {
+            return LongDecimalFormat.INSTANCE.getWritable(unscaledValue.longValue(), data.scale());
+        }
         long scale = data.scale();
         scale = scale >= 0 ? scale << 1 : -(scale << 1 | 1); // scale sign packing
         byte[] scaleRaw = BigInteger.valueOf(scale).toByteArray();
-        byte[] valueRaw = data.unscaledValue().toByteArray();
+        byte[] valueRaw = unscaledValue.toByteArray();
         return new Writable() {
 
             @Override
@@ -115,7 +136,7 @@ public class BigDecimalFormat implements EBMLFormat<BigDecimal> {
             }
 
             @Override
-            public int getSize() {
+            public long getSize() {
                 return codeLength(scaleRaw) + valueRaw.length;
             }
 
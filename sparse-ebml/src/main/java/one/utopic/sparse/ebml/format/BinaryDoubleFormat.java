@@ -0,0 +1,86 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.format;
+
+import static one.utopic.sparse.ebml.EBMLFormatUtil.readBinaryFloat;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.readSigned;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.writeSigned;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import one.utopic.abio.api.output.Output;
+import one.utopic.sparse.ebml.EBMLFormat;
+
+/**
+ * Writes and reads raw IEEE-754 binary64 data as EBML float, binary32 and
+ * empty data are read as well
+ */
+public class BinaryDoubleFormat implements EBMLFormat<Double> {
+
+    public static final BinaryDoubleFormat INSTANCE = new BinaryDoubleFormat();
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public Double readFormat(byte[] data) {
+        return readDouble(data);
+    }
+
+    @Override
+    public Double readFormat(ByteBuffer data) {
+        return readDouble(data);
+    }
+
+    public double readDouble(byte[] data) {
+        return readBinaryFloat(readSigned(data, 0, Math.min(data.length, Long.BYTES)), data.length);
+    }
+
+    public double readDouble(ByteBuffer data) {
+        if (data.remaining() > Long.BYTES) {
+            throw new IllegalArgumentException("Binary float data length " + data.remaining() + " should be 0, 4 or 8");
+        }
+        return readBinaryFloat(readSigned(data), data.remaining());
+    }
+
+    @Override
+    public Writable getWritable(Double data) {
+        return getWritable(data.doubleValue());
+    }
+
+    public Writable getWritable(double data) {
+        long bits = Double.doubleToRawLongBits(data);
+        return new Writable() {
+
+            @Override
+            public void writeFormat(Output out) throws IOException {
+                writeSigned(out, bits, Double.BYTES);
+            }
+
+            @Override
+            public long getSize() {
+                return Double.BYTES;
+            }
+
+        };
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.format;
+
+import static one.utopic.sparse.ebml.EBMLFormatUtil.writeSigned;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import one.utopic.abio.api.output.Output;
+import one.utopic.sparse.ebml.EBMLFormat;
+
+/**
+ * Writes and reads raw IEEE-754 binary32 data as EBML float, binary64 data is
+ * narrowed to float
+ */
+public class BinaryFloatFormat implements EBMLFormat<Float> {
+
+    public static final BinaryFloatFormat INSTANCE = new BinaryFloatFormat();
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public Float readFormat(byte[] data) {
+        return readFloat(data);
+    }
+
+    @Override
+    public Float readFormat(ByteBuffer data) {
+        return readFloat(data);
+    }
+
+    public float readFloat(byte[] data) {
+        return (float) BinaryDoubleFormat.INSTANCE.readDouble(data);
+    }
+
+    public float readFloat(ByteBuffer data) {
+        return (float) BinaryDoubleFormat.INSTANCE.readDouble(data);
+    }
+
+    @Override
+    public Writable getWritable(Float data) {
+        return getWritable(data.floatValue());
+    }
+
+    public Writable getWritable(float data) {
+        int bits = Float.floatToRawIntBits(data);
+        return new Writable() {
+
+            @Override
+            public void writeFormat(Output out) throws IOException {
+                writeSigned(out, bits, Float.BYTES);
+            }
+
+            @Override
+            public long getSize() {
+                return Float.BYTES;
+            }
+
+        };
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import one.utopic.abio.api.output.Output;
+import one.utopic.sparse.ebml.EBMLFormat;
+import one.utopic.sparse.ebml.io.BulkOutput;
+
+/**
+ * Writes and reads data unmodified as read-only {@link ByteBuffer} views
+ */
+public class ByteBufferFormat implements EBMLFormat<ByteBuffer> {
+
+    public static final ByteBufferFormat INSTANCE = new ByteBufferFormat();
+
+    @Override
+    public ByteBuffer readFormat(byte[] data) {
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    @Override
+    public ByteBuffer readFormat(ByteBuffer data) {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Buffer content is passed to the output without copying and may be
+     * referenced until the output is flushed, so it should not be changed
+     * meanwhile.
+     */
+    @Override
+    public Writable getWritable(ByteBuffer data) {
+        ByteBuffer buffer = data.duplicate();
+        return new Writable() {
+
+            @Override
+            public void writeFormat(Output out) throws IOException {
+                if (out instanceof BulkOutput) {
+                    ((BulkOutput) out).writeBytes(buffer);
+                } else {
+                    for (int i = buffer.position(); i < buffer.limit(); i++) {
+                        out.writeByte(buffer.get(i));
+                    }
+                }
+            }
+
+            @Override
+            public long getSize() {
+                return buffer.remaining();
+            }
+
+        };
+    }
+}
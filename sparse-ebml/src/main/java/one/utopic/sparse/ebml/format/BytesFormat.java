@@ -18,6 +18,8 @@
  */
 package one.utopic.sparse.ebml.format;
 
+import static one.utopic.sparse.ebml.EBMLFormatUtil.writeBytes;
+
 import java.io.IOException;
 
 import one.utopic.abio.api.output.Output;
@@ -40,19 +42,22 @@ public class BytesFormat implements EBMLFormat<byte[]> {
         return getClass().getSimpleName();
     }
 
+    /**
+     * Data is read when the writable is written, output does not keep a
+     * reference to it afterwards. Use {@link ByteBufferFormat} to pass buffers
+     * to the output without copying.
+     */
     @Override
     public Writable getWritable(byte[] data) {
         return new Writable() {
 
             @Override
             public void writeFormat(Output out) throws IOException {
-                for (int i = 0; i < data.length; i++) {
-                    out.writeByte(data[i]);
-                }
+                writeBytes(out, data, 0, data.length);
             }
 
             @Override
-            public int getSize() {
+            public long getSize() {
                 return data.length;
             }
 
@@ -19,6 +19,7 @@
 package one.utopic.sparse.ebml.format;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Date;
 
 import one.utopic.sparse.ebml.EBMLFormat;
@@ -29,27 +30,53 @@ import one.utopic.sparse.ebml.EBMLFormat;
  */
 public class DateFormat implements EBMLFormat<Date> {
 
-    public static final DateFormat INSTANCE = new DateFormat(BigIntegerFormat.INSTANCE);
+    public static final DateFormat INSTANCE = new DateFormat(LongFormat.INSTANCE);
 
     public static final long UNIX_EPOCH_DELAY = 978307200000L; // milliseconds from 2001/01/01 00:00:00.000 UTC
 
+    private final LongFormat longFormat;
     private final BigIntegerFormat bigintFormat;
 
+    public DateFormat(LongFormat longFormat) {
+        this.longFormat = longFormat;
+        this.bigintFormat = null;
+    }
+
+    /**
+     * @deprecated values are read and written through {@link BigInteger}, use
+     *             {@link #DateFormat(LongFormat)} instead
+     */
+    @Deprecated
     public DateFormat(BigIntegerFormat bigintFormat) {
+        this.longFormat = null;
         this.bigintFormat = bigintFormat;
     }
 
     @Override
     public Date readFormat(byte[] data) {
-        return dateFromLong(bigintFormat.readFormat(data).longValueExact());
+        if (null != bigintFormat) {
+            return dateFromLong(bigintFormat.readFormat(data).longValueExact());
+        }
+        return dateFromLong(longFormat.readLong(data));
+    }
+
+    @Override
+    public Date readFormat(ByteBuffer data) {
+        if (null != bigintFormat) {
+            return dateFromLong(bigintFormat.readFormat(data).longValueExact());
+        }
+        return dateFromLong(longFormat.readFormat(data));
     }
 
     @Override
     public Writable getWritable(Date data) {
-        return bigintFormat.getWritable(BigInteger.valueOf(dateToLong(data)));
+        if (null != bigintFormat) {
+            return bigintFormat.getWritable(BigInteger.valueOf(dateToLong(data)));
+        }
+        return longFormat.getWritable(dateToLong(data));
     }
 
-    private Date dateFromLong(Long date) {
+    private Date dateFromLong(long date) {
         return new Date(date + UNIX_EPOCH_DELAY);
     }
 
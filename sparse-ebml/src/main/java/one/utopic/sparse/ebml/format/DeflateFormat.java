@@ -0,0 +1,305 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.format;
+
+import static one.utopic.sparse.ebml.EBMLFormatUtil.readVint;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.vintLength;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.vintSize;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.writeVint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import one.utopic.abio.api.output.Output;
+import one.utopic.sparse.api.exception.SparseReaderException;
+import one.utopic.sparse.ebml.EBMLFormat;
+import one.utopic.sparse.ebml.EBMLFormatUtil;
+import one.utopic.sparse.ebml.EBMLReader;
+import one.utopic.sparse.ebml.io.ByteArrayOutput;
+import one.utopic.sparse.ebml.io.InputStreamInput;
+
+/**
+ * Compresses payload of the inner format with zlib deflate. Payload starts with
+ * a method byte, 0 for data stored as is and 1 for deflated data followed by
+ * its inflated size as EBML coded data. Payloads smaller than the threshold or
+ * not shrinking on compression are stored.
+ * <p>
+ * A whole subtree can be compressed by encoding it with a nested
+ * {@link one.utopic.sparse.ebml.EBMLWriter#EBMLWriter(Output)} into a
+ * {@link ByteArrayOutput} and writing the bytes with {@link #INSTANCE}, and read
+ * back by a nested {@link EBMLReader} over {@link #openStream(EBMLReader)}
+ * wrapped into {@link InputStreamInput}. A seekable writer should not be used
+ * for the subtree as it pads size fields to 8 bytes.
+ * <p>
+ * Declared inflated size comes from the input, so it is checked against a
+ * maximum and the result grows as data is inflated.
+ */
+public class DeflateFormat<O> implements EBMLFormat<O> {
+
+    public static final int DEFAULT_THRESHOLD = 256;
+    public static final int DEFAULT_MAX_SIZE = 64 << 20;
+
+    private static final byte STORED = 0;
+    private static final byte DEFLATED = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    private static final ArrayBlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    // declared after the pool size it depends on
+    public static final DeflateFormat<byte[]> INSTANCE = new DeflateFormat<>(BytesFormat.INSTANCE);
+
+    private final EBMLFormat<O> format;
+    private final int level;
+    private final int threshold;
+    private final int maxSize;
+    private final ArrayBlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    public DeflateFormat(EBMLFormat<O> format) {
+        this(format, Deflater.DEFAULT_COMPRESSION, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param level
+     *            {@link Deflater} compression level
+     * @param threshold
+     *            minimal payload size to compress
+     */
+    public DeflateFormat(EBMLFormat<O> format, int level, int threshold) {
+        this(format, level, threshold, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param level
+     *            {@link Deflater} compression level
+     * @param threshold
+     *            minimal payload size to compress
+     * @param maxSize
+     *            maximal inflated size accepted on read
+     */
+    public DeflateFormat(EBMLFormat<O> format, int level, int threshold, int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Maximal size " + maxSize + " should not be negative");
+        }
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Compression level " + level + " is out of range");
+        }
+        this.format = format;
+        this.level = level;
+        this.threshold = threshold;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [" + format + "]";
+    }
+
+    @Override
+    public O readFormat(byte[] data) {
+        return readFormat(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public O readFormat(ByteBuffer data) {
+        if (!data.hasRemaining()) {
+            return format.readFormat(data);
+        }
+        int p = data.position();
+        byte method = data.get(p++);
+        if (method == STORED) {
+            ByteBuffer stored = data.duplicate();
+            stored.position(p);
+            return format.readFormat(stored.slice());
+        }
+        if (method != DEFLATED) {
+            throw new IllegalArgumentException("Unknown compression method " + method);
+        }
+        long size = readVint(data, p, true);
+        if (size < 0 || size > maxSize) {
+            throw new IllegalArgumentException("Inflated size " + size + " exceeds maximal size " + maxSize);
+        }
+        p += vintSize(data, p);
+        byte[] input;
+        int offset, length = data.limit() - p;
+        if (data.hasArray()) {
+            input = data.array();
+            offset = data.arrayOffset() + p;
+        } else {
+            input = new byte[length];
+            offset = 0;
+            ByteBuffer compressed = data.duplicate();
+            compressed.position(p);
+            compressed.get(input);
+        }
+        // grows as data is inflated, so a forged size can't force the allocation
+        byte[] result = new byte[(int) Math.min(size, Math.max(BUFFER_SIZE, (long) length << 2))];
+        Inflater inflater = acquireInflater();
+        try {
+            inflater.setInput(input, offset, length);
+            for (int n = 0; n < size;) {
+                if (n == result.length) {
+                    result = Arrays.copyOf(result, (int) Math.min(size, (long) result.length << 1));
+                }
+                int r = inflater.inflate(result, n, result.length - n);
+                if (r == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Deflated data is shorter than declared size " + size);
+                }
+                n += r;
+            }
+            if (!inflater.finished() && (inflater.inflate(new byte[1]) > 0 || !inflater.finished())) {
+                throw new IllegalArgumentException("Deflated data is longer than declared size " + size);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            releaseInflater(inflater);
+        }
+        return format.readFormat(result);
+    }
+
+    /**
+     * Opens current element data as a stream of inflated payload, closing the
+     * stream skips the rest of element data
+     */
+    public InputStream openStream(EBMLReader reader) throws SparseReaderException {
+        InputStream data = reader.openStream();
+        try {
+            int method = data.read();
+            if (method == -1 || method == STORED) {
+                return data;
+            }
+            if (method != DEFLATED) {
+                throw new SparseReaderException("Unknown compression method " + method);
+            }
+            readVint(new InputStreamInput(data), true);
+            Inflater inflater = acquireInflater();
+            return new InflaterInputStream(data, inflater, BUFFER_SIZE) {
+
+                private boolean released = false;
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (!released) {
+                            released = true;
+                            releaseInflater(inflater);
+                        }
+                    }
+                }
+
+            };
+        } catch (IOException | RuntimeException e) {
+            // leave the reader at the element end, so the next event is read
+            try {
+                data.close();
+            } catch (IOException ce) {
+                e.addSuppressed(ce);
+            }
+            throw e instanceof SparseReaderException ? (SparseReaderException) e : new SparseReaderException(e);
+        }
+    }
+
+    @Override
+    public Writable getWritable(O data) {
+        Writable writable = format.getWritable(data);
+        ByteArrayOutput raw = new ByteArrayOutput((int) Math.min(writable.getSize(), BUFFER_SIZE));
+        try {
+            writable.writeFormat(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ByteArrayOutput deflated = raw.size() < threshold ? null : deflate(raw);
+        ByteArrayOutput payload = null == deflated ? raw : deflated;
+        long size = 1 + (null == deflated ? 0 : vintLength(raw.size())) + payload.size();
+        return new Writable() {
+
+            @Override
+            public void writeFormat(Output out) throws IOException {
+                if (null == deflated) {
+                    out.writeByte(STORED);
+                } else {
+                    out.writeByte(DEFLATED);
+                    writeVint(out, raw.size());
+                }
+                EBMLFormatUtil.writeBytes(out, payload.array(), 0, payload.size());
+            }
+
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+        };
+    }
+
+    /**
+     * @return deflated data or null if it doesn't shrink
+     */
+    private ByteArrayOutput deflate(ByteArrayOutput raw) {
+        ByteArrayOutput deflated = new ByteArrayOutput(Math.min(raw.size(), BUFFER_SIZE));
+        Deflater deflater = deflaters.poll();
+        if (null == deflater) {
+            deflater = new Deflater(level);
+        }
+        try {
+            deflater.setInput(raw.array(), 0, raw.size());
+            deflater.finish();
+            byte[] buf = new byte[Math.min(raw.size(), BUFFER_SIZE)];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                deflated.writeBytes(buf, 0, n);
+                if (deflated.size() >= raw.size()) {
+                    return null;
+                }
+            }
+            return deflated;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.reset();
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    private static Inflater acquireInflater() {
+        Inflater inflater = INFLATERS.poll();
+        return null == inflater ? new Inflater() : inflater;
+    }
+
+    private static void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        if (!INFLATERS.offer(inflater)) {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.format;
+
+import static one.utopic.sparse.ebml.EBMLFormatUtil.readVint;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.vintLength;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.vintSize;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.writeVint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import one.utopic.abio.api.output.Output;
+import one.utopic.sparse.api.exception.SparseReaderException;
+import one.utopic.sparse.api.exception.SparseWriterException;
+import one.utopic.sparse.ebml.EBMLFormat;
+import one.utopic.sparse.ebml.EBMLReader;
+import one.utopic.sparse.ebml.EBMLWriter;
+
+/**
+ * Writes and reads UTF8 strings through a bounded symbol table. Payload starts
+ * with EBML coded reference: 0 is followed by string data, 1 is followed by
+ * EBML coded sequence number and string data which is added to the table, any
+ * other value n refers to the table entry with sequence number n - 2. Entries
+ * are stored at slot sequence % capacity, so the oldest entry is evicted once
+ * the table is full.
+ * <p>
+ * The table belongs to the {@link EBMLWriter} or {@link EBMLReader} session,
+ * it is updated only once the value is passed to the writer or read from the
+ * reader. Reference to an entry which was skipped by the reader or evicted is
+ * reported as an error. Plain {@link #getWritable(String)} and
+ * {@link #readFormat(ByteBuffer)} do not use the table. Instances are
+ * immutable and thread-safe, writer and reader should use the same capacity.
+ */
+public class DictionaryStringFormat implements EBMLFormat<String> {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public static final DictionaryStringFormat INSTANCE = new DictionaryStringFormat();
+
+    private static final int LITERAL = 0;
+    private static final int ENTRY = 1;
+    private static final int REFERENCE = 2;
+
+    private final int capacity;
+
+    public DictionaryStringFormat() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity
+     *            number of table slots, 0 disables references
+     */
+    public DictionaryStringFormat(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity " + capacity + " should not be negative");
+        }
+        this.capacity = capacity;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [" + capacity + "]";
+    }
+
+    @Override
+    public String read(EBMLReader reader) throws SparseReaderException {
+        ByteBuffer data = ByteBufferFormat.INSTANCE.read(reader);
+        ReaderTable table = reader.getSessionState(this, k -> new ReaderTable(capacity));
+        try {
+            return table.read(data);
+        } catch (RuntimeException e) {
+            throw new SparseReaderException(e);
+        }
+    }
+
+    @Override
+    public String readFormat(byte[] data) {
+        return readFormat(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public String readFormat(ByteBuffer data) {
+        return read(data, null);
+    }
+
+    @Override
+    public void write(EBMLWriter w, String data) throws SparseWriterException {
+        if (capacity == 0) {
+            w.write(getWritable(data));
+            return;
+        }
+        WriterTable table = w.getSessionState(this, k -> new WriterTable(capacity));
+        Long sequence = table.index.get(data);
+        if (null != sequence) {
+            w.write(new Reference(sequence + REFERENCE));
+            return;
+        }
+        long next = table.next;
+        w.write(new Literal(ENTRY, next, data));
+        table.add(next, data);
+    }
+
+    @Override
+    public Writable getWritable(String data) {
+        return new Literal(LITERAL, 0, data);
+    }
+
+    private static String read(ByteBuffer data, ReaderTable table) {
+        if (!data.hasRemaining()) {
+            return "";
+        }
+        int p = data.position();
+        long reference = readVint(data, p, true);
+        if (reference >= REFERENCE) {
+            if (null == table) {
+                throw new IllegalArgumentException("Dictionary reference " + reference + " can not be resolved outside of reader session");
+            }
+            return table.get(reference - REFERENCE);
+        }
+        if (reference < 0) {
+            throw new IllegalArgumentException("Unknown dictionary reference " + reference);
+        }
+        p += vintSize(data, p);
+        long sequence = 0;
+        if (reference == ENTRY) {
+            sequence = readVint(data, p, true);
+            if (sequence < 0) {
+                throw new IllegalArgumentException("Unknown dictionary sequence " + sequence);
+            }
+            p += vintSize(data, p);
+        }
+        ByteBuffer literal = data.duplicate();
+        literal.position(p);
+        String value = UTF8StringFormat.INSTANCE.readFormat(literal.slice());
+        if (reference == ENTRY && null != table) {
+            table.put(sequence, value);
+        }
+        return value;
+    }
+
+    private static final class WriterTable {
+
+        private final String[] slots;
+        private final HashMap<String, Long> index = new HashMap<>();
+        private long next = 0;
+
+        WriterTable(int capacity) {
+            this.slots = new String[capacity];
+        }
+
+        void add(long sequence, String data) {
+            int slot = (int) (sequence % slots.length);
+            if (null != slots[slot]) {
+                index.remove(slots[slot]);
+            }
+            slots[slot] = data;
+            index.put(data, sequence);
+            next = sequence + 1;
+        }
+    }
+
+    private static final class ReaderTable {
+
+        private final String[] slots;
+        private final long[] sequences;
+
+        ReaderTable(int capacity) {
+            this.slots = new String[capacity];
+            this.sequences = new long[capacity];
+            Arrays.fill(sequences, -1);
+        }
+
+        String read(ByteBuffer data) {
+            return DictionaryStringFormat.read(data, this);
+        }
+
+        void put(long sequence, String value) {
+            if (slots.length > 0) {
+                int slot = (int) (sequence % slots.length);
+                slots[slot] = value;
+                sequences[slot] = sequence;
+            }
+        }
+
+        String get(long sequence) {
+            int slot = slots.length > 0 ? (int) (sequence % slots.length) : -1;
+            if (slot < 0 || sequences[slot] != sequence) {
+                throw new IllegalArgumentException("Dictionary entry " + sequence + " was skipped or evicted");
+            }
+            return slots[slot];
+        }
+    }
+
+    private static final class Reference implements Writable {
+
+        private final long reference;
+
+        Reference(long reference) {
+            this.reference = reference;
+        }
+
+        @Override
+        public void writeFormat(Output out) throws IOException {
+            writeVint(out, reference);
+        }
+
+        @Override
+        public long getSize() {
+            return vintLength(reference);
+        }
+    }
+
+    private static final class Literal implements Writable {
+
+        private final int reference;
+        private final long sequence;
+        private final String data;
+        private final int size;
+
+        Literal(int reference, long sequence, String data) {
+            this.reference = reference;
+            this.sequence = sequence;
+            this.data = data;
+            this.size = UTF8StringFormat.encodedLength(data);
+        }
+
+        @Override
+        public void writeFormat(Output out) throws IOException {
+            writeVint(out, reference);
+            if (reference == ENTRY) {
+                writeVint(out, sequence);
+            }
+            UTF8StringFormat.encode(out, data);
+        }
+
+        @Override
+        public long getSize() {
+            return vintLength(reference) + (reference == ENTRY ? vintLength(sequence) : 0) + size;
+        }
+    }
+}
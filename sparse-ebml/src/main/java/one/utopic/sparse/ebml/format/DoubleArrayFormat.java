@@ -0,0 +1,83 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import one.utopic.abio.api.output.Output;
+import one.utopic.sparse.ebml.EBMLFormat;
+
+/**
+ * Writes and reads double arrays packed into a single element as raw
+ * big-endian IEEE-754 binary64 values
+ */
+public class DoubleArrayFormat implements EBMLFormat<double[]> {
+
+    public static final DoubleArrayFormat INSTANCE = new DoubleArrayFormat();
+
+    private static final double[] EMPTY = new double[0];
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public double[] readFormat(byte[] data) {
+        return readFormat(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public double[] readFormat(ByteBuffer data) {
+        if (!data.hasRemaining()) {
+            return EMPTY;
+        }
+        if (data.remaining() % Double.BYTES != 0) {
+            throw new IllegalArgumentException("Data length " + data.remaining() + " is not a multiple of " + Double.BYTES);
+        }
+        double[] result = new double[data.remaining() / Double.BYTES];
+        data.duplicate().order(ByteOrder.BIG_ENDIAN).asDoubleBuffer().get(result);
+        return result;
+    }
+
+    @Override
+    public Writable getWritable(double[] data) {
+        long size = (long) data.length * Double.BYTES;
+        return new Writable() {
+
+            @Override
+            public void writeFormat(Output out) throws IOException {
+                ByteBuffer chunk = Varints.chunk(size);
+                for (double value : data) {
+                    Varints.ensure(out, chunk, Double.BYTES);
+                    chunk.putLong(Double.doubleToRawLongBits(value));
+                }
+                Varints.flush(out, chunk);
+            }
+
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+        };
+    }
+}
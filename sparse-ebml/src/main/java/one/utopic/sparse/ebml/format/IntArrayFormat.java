@@ -0,0 +1,123 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import one.utopic.abio.api.output.Output;
+import one.utopic.sparse.ebml.EBMLFormat;
+
+/**
+ * Writes and reads int arrays packed into a single element
+ *
+ * @see ArrayEncoding
+ */
+public class IntArrayFormat implements EBMLFormat<int[]> {
+
+    public static final IntArrayFormat INSTANCE = new IntArrayFormat(ArrayEncoding.FIXED);
+    public static final IntArrayFormat VARINT = new IntArrayFormat(ArrayEncoding.VARINT);
+    public static final IntArrayFormat DELTA = new IntArrayFormat(ArrayEncoding.DELTA);
+
+    private static final int[] EMPTY = new int[0];
+
+    private final ArrayEncoding encoding;
+
+    public IntArrayFormat(ArrayEncoding encoding) {
+        this.encoding = encoding;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [" + encoding + "]";
+    }
+
+    @Override
+    public int[] readFormat(byte[] data) {
+        return readFormat(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public int[] readFormat(ByteBuffer data) {
+        if (!data.hasRemaining()) {
+            return EMPTY;
+        }
+        if (encoding == ArrayEncoding.FIXED) {
+            if (data.remaining() % Integer.BYTES != 0) {
+                throw new IllegalArgumentException("Data length " + data.remaining() + " is not a multiple of " + Integer.BYTES);
+            }
+            int[] result = new int[data.remaining() / Integer.BYTES];
+            data.duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer().get(result);
+            return result;
+        }
+        int[] result = new int[Varints.count(data)];
+        int[] cursor = { data.position() };
+        long value = 0;
+        for (int i = 0; i < result.length; i++) {
+            long next = Varints.unZigZag(Varints.read(data, cursor));
+            value = encoding == ArrayEncoding.DELTA ? value + next : next;
+            result[i] = Math.toIntExact(value);
+        }
+        return result;
+    }
+
+    @Override
+    public Writable getWritable(int[] data) {
+        long size = encoding == ArrayEncoding.FIXED ? (long) data.length * Integer.BYTES : varintSize(data);
+        return new Writable() {
+
+            @Override
+            public void writeFormat(Output out) throws IOException {
+                ByteBuffer chunk = Varints.chunk(size);
+                if (encoding == ArrayEncoding.FIXED) {
+                    for (int value : data) {
+                        Varints.ensure(out, chunk, Integer.BYTES);
+                        chunk.putInt(value);
+                    }
+                } else {
+                    long prev = 0;
+                    for (int value : data) {
+                        long zigZag = Varints.zigZag(encoding == ArrayEncoding.DELTA ? value - prev : value);
+                        Varints.ensure(out, chunk, Varints.length(zigZag));
+                        Varints.write(chunk, zigZag);
+                        prev = value;
+                    }
+                }
+                Varints.flush(out, chunk);
+            }
+
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+        };
+    }
+
+    private long varintSize(int[] data) {
+        long size = 0;
+        long prev = 0;
+        for (int value : data) {
+            size += Varints.length(Varints.zigZag(encoding == ArrayEncoding.DELTA ? value - prev : value));
+            prev = value;
+        }
+        return size;
+    }
+}
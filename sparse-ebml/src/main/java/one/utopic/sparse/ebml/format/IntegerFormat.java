@@ -18,9 +18,10 @@
  */
 package one.utopic.sparse.ebml.format;
 
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
 import one.utopic.sparse.ebml.EBMLFormat;
+import one.utopic.sparse.ebml.EBMLFormatUtil;
 
 /**
  * Acts like a BigIntegerFormat but value and scale are limited to Integer type
@@ -36,11 +37,24 @@ public class IntegerFormat implements EBMLFormat<Integer> {
 
     @Override
     public Integer readFormat(byte[] data) {
-        return BigIntegerFormat.INSTANCE.readFormat(data).intValueExact();
+        return readInt(data);
+    }
+
+    @Override
+    public Integer readFormat(ByteBuffer data) {
+        return Math.toIntExact(EBMLFormatUtil.readSigned(data));
+    }
+
+    public int readInt(byte[] data) {
+        return Math.toIntExact(LongFormat.INSTANCE.readLong(data));
     }
 
     @Override
     public Writable getWritable(Integer data) {
-        return BigIntegerFormat.INSTANCE.getWritable(BigInteger.valueOf(data));
+        return getWritable(data.intValue());
+    }
+
+    public Writable getWritable(int data) {
+        return LongFormat.INSTANCE.getWritable(data);
     }
 }
@@ -0,0 +1,122 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import one.utopic.abio.api.output.Output;
+import one.utopic.sparse.ebml.EBMLFormat;
+
+/**
+ * Writes and reads long arrays packed into a single element
+ *
+ * @see ArrayEncoding
+ */
+public class LongArrayFormat implements EBMLFormat<long[]> {
+
+    public static final LongArrayFormat INSTANCE = new LongArrayFormat(ArrayEncoding.FIXED);
+    public static final LongArrayFormat VARINT = new LongArrayFormat(ArrayEncoding.VARINT);
+    public static final LongArrayFormat DELTA = new LongArrayFormat(ArrayEncoding.DELTA);
+
+    private static final long[] EMPTY = new long[0];
+
+    private final ArrayEncoding encoding;
+
+    public LongArrayFormat(ArrayEncoding encoding) {
+        this.encoding = encoding;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [" + encoding + "]";
+    }
+
+    @Override
+    public long[] readFormat(byte[] data) {
+        return readFormat(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public long[] readFormat(ByteBuffer data) {
+        if (!data.hasRemaining()) {
+            return EMPTY;
+        }
+        if (encoding == ArrayEncoding.FIXED) {
+            if (data.remaining() % Long.BYTES != 0) {
+                throw new IllegalArgumentException("Data length " + data.remaining() + " is not a multiple of " + Long.BYTES);
+            }
+            long[] result = new long[data.remaining() / Long.BYTES];
+            data.duplicate().order(ByteOrder.BIG_ENDIAN).asLongBuffer().get(result);
+            return result;
+        }
+        long[] result = new long[Varints.count(data)];
+        int[] cursor = { data.position() };
+        long value = 0;
+        for (int i = 0; i < result.length; i++) {
+            long next = Varints.unZigZag(Varints.read(data, cursor));
+            result[i] = value = encoding == ArrayEncoding.DELTA ? value + next : next;
+        }
+        return result;
+    }
+
+    @Override
+    public Writable getWritable(long[] data) {
+        long size = encoding == ArrayEncoding.FIXED ? (long) data.length * Long.BYTES : varintSize(data);
+        return new Writable() {
+
+            @Override
+            public void writeFormat(Output out) throws IOException {
+                ByteBuffer chunk = Varints.chunk(size);
+                if (encoding == ArrayEncoding.FIXED) {
+                    for (long value : data) {
+                        Varints.ensure(out, chunk, Long.BYTES);
+                        chunk.putLong(value);
+                    }
+                } else {
+                    long prev = 0;
+                    for (long value : data) {
+                        long zigZag = Varints.zigZag(encoding == ArrayEncoding.DELTA ? value - prev : value);
+                        Varints.ensure(out, chunk, Varints.length(zigZag));
+                        Varints.write(chunk, zigZag);
+                        prev = value;
+                    }
+                }
+                Varints.flush(out, chunk);
+            }
+
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+        };
+    }
+
+    private long varintSize(long[] data) {
+        long size = 0;
+        long prev = 0;
+        for (long value : data) {
+            size += Varints.length(Varints.zigZag(encoding == ArrayEncoding.DELTA ? value - prev : value));
+            prev = value;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.format;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable decimal number with long unscaled value and int scale, a compact
+ * alternative to {@link BigDecimal} for values which fit into it. Equality is
+ * the same as of BigDecimal, so 1.0 and 1.00 are not equal.
+ */
+public final class LongDecimal {
+
+    public static final LongDecimal ZERO = new LongDecimal(0, 0);
+
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+            1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private final long unscaledValue;
+    private final int scale;
+
+    private LongDecimal(long unscaledValue, int scale) {
+        this.unscaledValue = unscaledValue;
+        this.scale = scale;
+    }
+
+    /**
+     * @return decimal equal to unscaledValue × 10<sup>-scale</sup>
+     */
+    public static LongDecimal valueOf(long unscaledValue, int scale) {
+        return unscaledValue == 0 && scale == 0 ? ZERO : new LongDecimal(unscaledValue, scale);
+    }
+
+    /**
+     * @throws ArithmeticException
+     *             if unscaled value of data doesn't fit into long
+     */
+    public static LongDecimal valueOf(BigDecimal data) {
+        return valueOf(data.unscaledValue().longValueExact(), data.scale());
+    }
+
+    public long getUnscaledValue() {
+        return unscaledValue;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(unscaledValue, scale);
+    }
+
+    public double doubleValue() {
+        // exact for small values and scales as both parts are representable
+        if (scale >= 0 && scale < POWERS_OF_TEN.length && Math.abs(unscaledValue) < 1L << 53) {
+            return unscaledValue / POWERS_OF_TEN[scale];
+        }
+        return toBigDecimal().doubleValue();
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(unscaledValue) + scale;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        LongDecimal other = (LongDecimal) obj;
+        return unscaledValue == other.unscaledValue && scale == other.scale;
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toString();
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.format;
+
+import static one.utopic.sparse.ebml.EBMLFormatUtil.readVint;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.shiftSigned;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.signedLength;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.vintLength;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.vintSize;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.writeSigned;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.writeVint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import one.utopic.abio.api.output.Output;
+import one.utopic.sparse.ebml.EBMLFormat;
+
+/**
+ * Acts like a BigDecimalFormat but unscaled value is limited to Long type,
+ * values are decoded without BigInteger and intermediate arrays
+ */
+public class LongDecimalFormat implements EBMLFormat<LongDecimal> {
+
+    public static final LongDecimalFormat INSTANCE = new LongDecimalFormat();
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public LongDecimal readFormat(byte[] data) {
+        return readFormat(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * @throws ArithmeticException
+     *             if the value doesn't fit into LongDecimal
+     */
+    @Override
+    public LongDecimal readFormat(ByteBuffer data) {
+        LongDecimal value = decode(data);
+        if (null == value) {
+            throw new ArithmeticException("Decimal value doesn't fit into " + LongDecimal.class.getSimpleName());
+        }
+        return value;
+    }
+
+    /**
+     * @return decoded value or null if it doesn't fit into LongDecimal
+     */
+    static LongDecimal decode(ByteBuffer data) {
+        if (!data.hasRemaining()) {
+            return LongDecimal.ZERO;
+        }
+        int p = data.position();
+        int scaleLength = vintSize(data.get(p));
+        int valueLength = data.remaining() - scaleLength;
+        if (scaleLength > Long.BYTES || valueLength < 1 || valueLength > Long.BYTES) {
+            return null;
+        }
+        long scale = readVint(data, p, true);
+        if (scale < 0 || scale > 0xFFFFFFFFL) {
+            return null;
+        }
+        scale = (1 & scale) == 0 ? scale >> 1 : -scale >> 1; // scale sign unpacking
+        long value = 0;
+        for (int i = 0; i < valueLength; i++) {
+            value = shiftSigned(value, data.get(p + scaleLength + i), i);
+        }
+        return LongDecimal.valueOf(value, (int) scale);
+    }
+
+    @Override
+    public Writable getWritable(LongDecimal data) {
+        return getWritable(data.getUnscaledValue(), data.getScale());
+    }
+
+    public Writable getWritable(long unscaledValue, int scale) {
+        long packedScale = scale >= 0 ? (long) scale << 1 : -((long) scale << 1 | 1); // scale sign packing
+        int size = signedLength(unscaledValue);
+        return new Writable() {
+
+            @Override
+            public void writeFormat(Output out) throws IOException {
+                writeVint(out, packedScale);
+                writeSigned(out, unscaledValue, size);
+            }
+
+            @Override
+            public long getSize() {
+                return vintLength(packedScale) + size;
+            }
+
+        };
+    }
+}
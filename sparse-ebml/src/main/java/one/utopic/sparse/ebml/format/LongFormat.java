@@ -18,8 +18,14 @@
  */
 package one.utopic.sparse.ebml.format;
 
-import java.math.BigInteger;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.readSigned;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.signedLength;
+import static one.utopic.sparse.ebml.EBMLFormatUtil.writeSigned;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import one.utopic.abio.api.output.Output;
 import one.utopic.sparse.ebml.EBMLFormat;
 
 /**
@@ -36,11 +42,37 @@ public class LongFormat implements EBMLFormat<Long> {
 
     @Override
     public Long readFormat(byte[] data) {
-        return BigIntegerFormat.INSTANCE.readFormat(data).longValueExact();
+        return readLong(data);
+    }
+
+    @Override
+    public Long readFormat(ByteBuffer data) {
+        return readSigned(data);
+    }
+
+    public long readLong(byte[] data) {
+        return readSigned(data, 0, data.length);
     }
 
     @Override
     public Writable getWritable(Long data) {
-        return BigIntegerFormat.INSTANCE.getWritable(BigInteger.valueOf(data));
+        return getWritable(data.longValue());
+    }
+
+    public Writable getWritable(long data) {
+        int size = signedLength(data);
+        return new Writable() {
+
+            @Override
+            public void writeFormat(Output out) throws IOException {
+                writeSigned(out, data, size);
+            }
+
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+        };
     }
 }
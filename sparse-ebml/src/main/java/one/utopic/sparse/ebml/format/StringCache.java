@@ -0,0 +1,146 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.format;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of decoded string values keyed by their payload bytes, so
+ * repeated values are decoded once and share a single instance. It is a
+ * direct mapped table, colliding values replace each other. Safe for
+ * concurrent use, races only cost extra misses.
+ */
+public final class StringCache {
+
+    private static final int DEFAULT_MAX_LENGTH = 64;
+
+    private static final class Entry {
+
+        private final byte[] key;
+        private final int hash;
+        private final String value;
+
+        private Entry(byte[] key, int hash, String value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+
+        private boolean matches(ByteBuffer data, int hash) {
+            if (this.hash != hash || key.length != data.remaining()) {
+                return false;
+            }
+            for (int i = 0, p = data.position(); i < key.length; i++, p++) {
+                if (key[i] != data.get(p)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+    private final int maxLength;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StringCache(int capacity) {
+        this(capacity, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param capacity
+     *            number of cached values, rounded up to a power of two
+     * @param maxLength
+     *            max payload length of cached values, longer ones are always
+     *            decoded
+     */
+    public StringCache(int capacity, int maxLength) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity " + capacity + " is out of range");
+        }
+        int size = Integer.highestOneBit(capacity);
+        size = size < capacity ? size << 1 : size;
+        this.table = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return cached value for data or the one produced by the decoder, data
+     *         position is left untouched
+     */
+    public String get(ByteBuffer data, Function<ByteBuffer, String> decoder) {
+        int length = data.remaining();
+        if (length > maxLength) {
+            return decoder.apply(data);
+        }
+        int hash = hash(data);
+        int index = hash & mask;
+        Entry entry = table.get(index);
+        if (entry != null && entry.matches(data, hash)) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        byte[] key = new byte[length];
+        for (int i = 0, p = data.position(); i < length; i++, p++) {
+            key[i] = data.get(p);
+        }
+        String value = decoder.apply(data);
+        table.set(index, new Entry(key, hash, value));
+        return value;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, null);
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    private static int hash(ByteBuffer data) {
+        int h = 1;
+        for (int p = data.position(); p < data.limit(); p++) {
+            h = 31 * h + data.get(p);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [size=" + table.length() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + "]";
+    }
+
+}
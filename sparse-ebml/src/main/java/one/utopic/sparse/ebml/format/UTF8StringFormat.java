@@ -18,27 +18,95 @@
  */
 package one.utopic.sparse.ebml.format;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 
+import one.utopic.abio.api.output.Output;
 import one.utopic.sparse.ebml.EBMLFormat;
+import one.utopic.sparse.ebml.io.BulkOutput;
 
 /**
- * Writes and reads UTF8 string data
+ * Writes and reads UTF8 string data. Strings are encoded without intermediate
+ * arrays, through a reusable chunk when output supports bulk writes, unpaired
+ * surrogates are written as '?' like {@link String#getBytes(Charset)} does.
  */
 public class UTF8StringFormat implements EBMLFormat<String> {
 
     public static final UTF8StringFormat INSTANCE = new UTF8StringFormat();
 
-    private static final Charset CHARSET = Charset.forName("UTF8");
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final ThreadLocal<byte[]> CHUNK = ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+
+    private static final ThreadLocal<CharsetDecoder> DECODER = ThreadLocal.withInitial(() -> CHARSET.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE));
+
+    private final StringCache cache;
+
+    public UTF8StringFormat() {
+        this(null);
+    }
+
+    /**
+     * @param cache
+     *            cache of decoded values, may be shared between formats of the
+     *            same charset
+     */
+    public UTF8StringFormat(StringCache cache) {
+        this.cache = cache;
+    }
 
     @Override
     public String readFormat(byte[] data) {
         if (data.length < 1) {
             return "";
         }
+        if (null != cache) {
+            return cache.get(ByteBuffer.wrap(data), UTF8StringFormat::decode);
+        }
         return new String(data, CHARSET);
     }
 
+    @Override
+    public String readFormat(ByteBuffer data) {
+        if (data.remaining() < 1) {
+            return "";
+        }
+        return null == cache ? decode(data) : cache.get(data, UTF8StringFormat::decode);
+    }
+
+    private static String decode(ByteBuffer data) {
+        int length = data.remaining();
+        if (data.hasArray()) {
+            return new String(data.array(), data.arrayOffset() + data.position(), length, CHARSET);
+        }
+        char[] chars = new char[length];
+        for (int i = 0, p = data.position(); i < length; i++, p++) {
+            byte b = data.get(p);
+            if (b < 0) {
+                return decodeCharset(data);
+            }
+            chars[i] = (char) b;
+        }
+        return new String(chars);
+    }
+
+    private static String decodeCharset(ByteBuffer data) {
+        try {
+            return DECODER.get().decode(data.duplicate()).toString();
+        } catch (CharacterCodingException e) {
+            // never happens as decoder replaces malformed input
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName();
@@ -46,6 +114,104 @@ public class UTF8StringFormat implements EBMLFormat<String> {
 
     @Override
     public Writable getWritable(String data) {
-        return BytesFormat.INSTANCE.getWritable(data.getBytes(CHARSET));
+        int size = encodedLength(data);
+        return new Writable() {
+
+            @Override
+            public void writeFormat(Output out) throws IOException {
+                encode(out, data);
+            }
+
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+        };
+    }
+
+    /**
+     * @return length of UTF8 encoded data without encoding it
+     */
+    public static int encodedLength(CharSequence data) {
+        int length = data.length();
+        for (int i = 0, n = data.length(); i < n; i++) {
+            char c = data.charAt(i);
+            if (c < 0x80) {
+                continue;
+            } else if (c < 0x800) {
+                length += 1;
+            } else if (!Character.isSurrogate(c)) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(data.charAt(i + 1))) {
+                // 4 bytes of 2 chars
+                length += 2;
+                i++;
+            }
+        }
+        return length;
+    }
+
+    public static void encode(Output out, CharSequence data) throws IOException {
+        if (out instanceof BulkOutput) {
+            encode((BulkOutput) out, data);
+            return;
+        }
+        for (int i = 0, n = data.length(); i < n; i++) {
+            char c = data.charAt(i);
+            if (c < 0x80) {
+                out.writeByte((byte) c);
+            } else if (c < 0x800) {
+                out.writeByte((byte) (0xC0 | c >> 6));
+                out.writeByte((byte) (0x80 | c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                out.writeByte((byte) (0xE0 | c >> 12));
+                out.writeByte((byte) (0x80 | c >> 6 & 0x3F));
+                out.writeByte((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(data.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, data.charAt(++i));
+                out.writeByte((byte) (0xF0 | cp >> 18));
+                out.writeByte((byte) (0x80 | cp >> 12 & 0x3F));
+                out.writeByte((byte) (0x80 | cp >> 6 & 0x3F));
+                out.writeByte((byte) (0x80 | cp & 0x3F));
+            } else {
+                out.writeByte((byte) '?');
+            }
+        }
+    }
+
+    private static void encode(BulkOutput out, CharSequence data) throws IOException {
+        byte[] chunk = CHUNK.get();
+        // room for the longest sequence
+        int limit = chunk.length - 4;
+        int p = 0;
+        for (int i = 0, n = data.length(); i < n; i++) {
+            if (p > limit) {
+                out.writeBytes(chunk, 0, p);
+                p = 0;
+            }
+            char c = data.charAt(i);
+            if (c < 0x80) {
+                chunk[p++] = (byte) c;
+            } else if (c < 0x800) {
+                chunk[p++] = (byte) (0xC0 | c >> 6);
+                chunk[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (!Character.isSurrogate(c)) {
+                chunk[p++] = (byte) (0xE0 | c >> 12);
+                chunk[p++] = (byte) (0x80 | c >> 6 & 0x3F);
+                chunk[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(data.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, data.charAt(++i));
+                chunk[p++] = (byte) (0xF0 | cp >> 18);
+                chunk[p++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                chunk[p++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                chunk[p++] = (byte) (0x80 | cp & 0x3F);
+            } else {
+                chunk[p++] = (byte) '?';
+            }
+        }
+        if (p > 0) {
+            out.writeBytes(chunk, 0, p);
+        }
     }
 }
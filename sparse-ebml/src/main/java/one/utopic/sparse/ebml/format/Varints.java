@@ -0,0 +1,124 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.format;
+
+import static one.utopic.sparse.ebml.EBMLFormatUtil.writeBytes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import one.utopic.abio.api.output.Output;
+
+/**
+ * Zigzag LEB128 varint routines shared by packed array formats
+ */
+final class Varints {
+
+    private static final int MAX_LENGTH = 10;
+
+    private static final int CHUNK_SIZE = 8192;
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> (Long.SIZE - 1));
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int length(long value) {
+        return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 6) / 7);
+    }
+
+    static void write(ByteBuffer chunk, long value) {
+        while ((value & ~0x7FL) != 0) {
+            chunk.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        chunk.put((byte) value);
+    }
+
+    /**
+     * @return scratch buffer holding the whole encoded data of size bytes, or a
+     *         part of it for large data
+     */
+    static ByteBuffer chunk(long size) {
+        return ByteBuffer.allocate((int) Math.min(size, CHUNK_SIZE));
+    }
+
+    /**
+     * Writes chunk content out if it has no room for length more bytes
+     */
+    static void ensure(Output out, ByteBuffer chunk, int length) throws IOException {
+        if (chunk.remaining() < length) {
+            flush(out, chunk);
+        }
+    }
+
+    static void flush(Output out, ByteBuffer chunk) throws IOException {
+        if (chunk.position() > 0) {
+            writeBytes(out, chunk.array(), 0, chunk.position());
+            chunk.clear();
+        }
+    }
+
+    /**
+     * @return number of varints in data
+     * @throws IllegalArgumentException
+     *             if the last varint is truncated
+     */
+    static int count(ByteBuffer data) {
+        int count = 0;
+        for (int p = data.position(); p < data.limit(); p++) {
+            if (data.get(p) >= 0) {
+                count++;
+            }
+        }
+        if (data.hasRemaining() && data.get(data.limit() - 1) < 0) {
+            throw new IllegalArgumentException("Varint data is truncated");
+        }
+        return count;
+    }
+
+    /**
+     * Reads varint at absolute index
+     *
+     * @param cursor
+     *            holds index and is advanced past the varint
+     */
+    static long read(ByteBuffer data, int[] cursor) {
+        int p = cursor[0];
+        long value = 0;
+        byte b;
+        int i = 0;
+        do {
+            if (i == MAX_LENGTH) {
+                throw new IllegalArgumentException("Varint is longer than " + MAX_LENGTH + " bytes");
+            }
+            b = data.get(p + i);
+            value |= (b & 0x7FL) << (7 * i++);
+        } while (b < 0);
+        cursor[0] = p + i;
+        return value;
+    }
+
+    private Varints() {
+    }
+
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.io;
+
+import java.io.IOException;
+
+import one.utopic.abio.api.input.Input;
+
+/**
+ * Input extension able to transfer and skip data in blocks
+ */
+public interface BulkInput extends Input {
+
+    /**
+     * Reads up to len bytes into buf starting at off
+     *
+     * @return number of bytes actually read, 0 if input is finished
+     */
+    int readBytes(byte[] buf, int off, int len) throws IOException;
+
+    /**
+     * Skips up to n bytes
+     *
+     * @return number of bytes actually skipped, 0 if input is finished
+     */
+    long skip(long n) throws IOException;
+
+}
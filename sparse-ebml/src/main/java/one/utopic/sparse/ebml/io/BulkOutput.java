@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import one.utopic.abio.api.output.Output;
+
+/**
+ * Output extension able to transfer data in blocks
+ */
+public interface BulkOutput extends Output {
+
+    /**
+     * Writes len bytes of buf starting at off, buf may be reused as soon as
+     * the method returns
+     */
+    void writeBytes(byte[] buf, int off, int len) throws IOException;
+
+    /**
+     * Writes remaining bytes of data leaving its position untouched.
+     * Implementations may keep a reference to data until they are flushed, so
+     * its content should not be changed meanwhile.
+     */
+    default void writeBytes(ByteBuffer data) throws IOException {
+        if (data.hasArray()) {
+            writeBytes(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        } else {
+            for (int i = data.position(); i < data.limit(); i++) {
+                writeByte(data.get(i));
+            }
+        }
+    }
+
+}
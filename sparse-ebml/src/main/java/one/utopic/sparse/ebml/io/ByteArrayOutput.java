@@ -0,0 +1,128 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Growable in-memory output, the backing array is kept on {@link #reset()} so
+ * an instance can be reused
+ */
+public class ByteArrayOutput implements BulkOutput, SeekableOutput {
+
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private byte[] buf;
+    private int position = 0;
+    private int size = 0;
+
+    public ByteArrayOutput() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ByteArrayOutput(int capacity) {
+        this.buf = new byte[capacity];
+    }
+
+    @Override
+    public boolean isFinished() {
+        return false;
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+        if (position == buf.length) {
+            ensureCapacity(position + 1);
+        }
+        buf[position++] = b;
+        if (position > size) {
+            size = position;
+        }
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int off, int len) throws IOException {
+        if (len > buf.length - position) {
+            ensureCapacity(position + len);
+        }
+        System.arraycopy(b, off, buf, position, len);
+        position += len;
+        if (position > size) {
+            size = position;
+        }
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public void position(long position) throws IOException {
+        if (position < 0 || position > size) {
+            throw new IOException("Position " + position + " is out of written range " + size);
+        }
+        this.position = (int) position;
+    }
+
+    /**
+     * Moves data within the written range, source and target may overlap
+     */
+    public void move(int from, int to, int length) {
+        System.arraycopy(buf, from, buf, to, length);
+    }
+
+    /**
+     * Truncates written data to the given size
+     */
+    public void truncate(int size) {
+        this.size = Math.min(this.size, size);
+        this.position = Math.min(this.position, this.size);
+    }
+
+    public void reset() {
+        this.position = 0;
+        this.size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return backing array, valid up to {@link #size()}
+     */
+    public byte[] array() {
+        return buf;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    private void ensureCapacity(int capacity) throws IOException {
+        if (capacity < 0) {
+            throw new IOException("Buffer size limit exceeded");
+        }
+        int newCapacity = Math.max(capacity, buf.length << 1);
+        buf = Arrays.copyOf(buf, newCapacity < 0 ? Integer.MAX_VALUE - 8 : newCapacity);
+    }
+
+}
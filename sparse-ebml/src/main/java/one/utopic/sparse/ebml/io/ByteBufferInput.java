@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import one.utopic.sparse.ebml.EBMLFormatUtil;
+
+/**
+ * Reads data from a {@link ByteBuffer} (e.g. a MappedByteBuffer) by absolute
+ * offsets, leaving the source buffer position untouched
+ */
+public class ByteBufferInput implements BulkInput {
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+
+    public ByteBufferInput(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return position >= limit;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        if (isFinished()) {
+            throw new EOFException();
+        }
+        return buffer.get(position++);
+    }
+
+    @Override
+    public int readBytes(byte[] buf, int off, int len) throws IOException {
+        int n = Math.min(len, limit - position);
+        if (n > 0) {
+            buffer.position(position);
+            buffer.get(buf, off, n);
+            position += n;
+        }
+        return Math.max(0, n);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        int s = (int) Math.max(0, Math.min(n, limit - position));
+        position += s;
+        return s;
+    }
+
+    /**
+     * Reads EBML coded data, loading up to 8 bytes at once
+     */
+    public long readVint(boolean strip) throws IOException {
+        try {
+            int size = EBMLFormatUtil.vintSize(buffer, position);
+            if (size > limit - position) {
+                throw new EOFException();
+            }
+            long value = EBMLFormatUtil.readVint(buffer, position, strip);
+            position += size;
+            return value;
+        } catch (IndexOutOfBoundsException e) {
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * Returns read-only view of up to length next bytes without copying them
+     */
+    public ByteBuffer slice(int length) {
+        int n = Math.max(0, Math.min(length, limit - position));
+        buffer.limit(position + n);
+        buffer.position(position);
+        ByteBuffer slice = buffer.slice().asReadOnlyBuffer();
+        buffer.limit(limit);
+        position += n;
+        return slice;
+    }
+
+    public int position() {
+        return position;
+    }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.io;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes data into a {@link ByteBuffer} advancing its position
+ */
+public class ByteBufferOutput implements BulkOutput {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferOutput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return !buffer.hasRemaining();
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+        try {
+            buffer.put(b);
+        } catch (BufferOverflowException e) {
+            throw new IOException("Buffer is full", e);
+        }
+    }
+
+    @Override
+    public void writeBytes(byte[] buf, int off, int len) throws IOException {
+        try {
+            buffer.put(buf, off, len);
+        } catch (BufferOverflowException e) {
+            throw new IOException("Buffer has no room for " + len + " bytes", e);
+        }
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer data) throws IOException {
+        try {
+            buffer.put(data.duplicate());
+        } catch (BufferOverflowException e) {
+            throw new IOException("Buffer has no room for " + data.remaining() + " bytes", e);
+        }
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Buffered output to a {@link SeekableByteChannel} (e.g. a FileChannel).
+ * Seeks within the buffered region are served in memory, so patching recently
+ * written data does not touch the channel.
+ */
+public class ChannelOutput implements BulkOutput, SeekableOutput, Flushable, Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    private final SeekableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] buf;
+
+    private long bufferStart;
+    private int cursor = 0;
+    private int end = 0;
+
+    public ChannelOutput(SeekableByteChannel channel) throws IOException {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ChannelOutput(SeekableByteChannel channel, int bufferSize) throws IOException {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buf = this.buffer.array();
+        this.bufferStart = channel.position();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return !channel.isOpen();
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+        if (cursor == buf.length) {
+            flush();
+        }
+        buf[cursor++] = b;
+        if (cursor > end) {
+            end = cursor;
+        }
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (cursor == buf.length) {
+                flush();
+            }
+            int n = Math.min(len, buf.length - cursor);
+            System.arraycopy(b, off, buf, cursor, n);
+            cursor += n;
+            off += n;
+            len -= n;
+            if (cursor > end) {
+                end = cursor;
+            }
+        }
+    }
+
+    @Override
+    public long position() {
+        return bufferStart + cursor;
+    }
+
+    @Override
+    public void position(long position) throws IOException {
+        if (position >= bufferStart && position <= bufferStart + end) {
+            cursor = (int) (position - bufferStart);
+        } else {
+            flush();
+            bufferStart = position;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (end > 0) {
+            channel.position(bufferStart);
+            buffer.clear();
+            buffer.limit(end);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        bufferStart += cursor;
+        cursor = 0;
+        end = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Buffered output to a {@link GatheringByteChannel} (e.g. a SocketChannel).
+ * Small writes such as element headers are collected in a buffer, while
+ * {@link ByteBuffer} blocks of at least gather threshold size are queued by
+ * reference and handed to the channel along with the buffered data in a single
+ * gathering write. Queued blocks must stay unchanged until the next
+ * {@link #flush()}.
+ */
+public class GatheringChannelOutput implements BulkOutput, Flushable, Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_GATHER_THRESHOLD = 4096;
+    private static final int MAX_GATHER = 64;
+
+    private final GatheringByteChannel channel;
+    private final ByteBuffer buffer;
+    private final int gatherThreshold;
+
+    // one extra slot for buffered data queued on flush
+    private final ByteBuffer[] queue = new ByteBuffer[MAX_GATHER + 1];
+    private int queued = 0;
+    private int mark = 0;
+
+    public GatheringChannelOutput(GatheringByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE, DEFAULT_GATHER_THRESHOLD);
+    }
+
+    public GatheringChannelOutput(GatheringByteChannel channel, int bufferSize, int gatherThreshold) {
+        if (bufferSize < 1 || gatherThreshold < 1) {
+            throw new IllegalArgumentException("Buffer size " + bufferSize + " and gather threshold " + gatherThreshold + " should be positive");
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.gatherThreshold = gatherThreshold;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return !channel.isOpen();
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(b);
+    }
+
+    @Override
+    public void writeBytes(byte[] buf, int off, int len) throws IOException {
+        if (len >= buffer.capacity()) {
+            flush();
+            ByteBuffer data = ByteBuffer.wrap(buf, off, len);
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            return;
+        }
+        if (len > buffer.remaining()) {
+            flush();
+        }
+        buffer.put(buf, off, len);
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer data) throws IOException {
+        int len = data.remaining();
+        if (len < gatherThreshold && len <= buffer.capacity()) {
+            if (len > buffer.remaining()) {
+                flush();
+            }
+            buffer.put(data.duplicate());
+        } else {
+            gather(data.duplicate());
+        }
+    }
+
+    private void gather(ByteBuffer data) throws IOException {
+        if (queued >= MAX_GATHER - 1) {
+            flush();
+        }
+        queueBuffered();
+        queue[queued++] = data;
+    }
+
+    private void queueBuffered() {
+        if (buffer.position() > mark) {
+            ByteBuffer buffered = buffer.duplicate();
+            buffered.flip();
+            buffered.position(mark);
+            queue[queued++] = buffered;
+            mark = buffer.position();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        queueBuffered();
+        try {
+            for (int i = 0; i < queued;) {
+                channel.write(queue, i, queued - i);
+                while (i < queued && !queue[i].hasRemaining()) {
+                    i++;
+                }
+            }
+        } finally {
+            while (queued > 0) {
+                queue[--queued] = null;
+            }
+            buffer.clear();
+            mark = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright © 2017 Anton Filatov (ya-enot@mail.ru)
+ *
+ * This file is part of SParse.
+ *
+ * SParse is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SParse is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SParse.  If not, see <https://www.gnu.org/licenses/lgpl-3.0>.
+ */
+package one.utopic.sparse.ebml.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Reads data from an {@link InputStream} keeping one byte of look-ahead to
+ * detect the end of stream
+ */
+public class InputStreamInput implements BulkInput {
+
+    private static final int UNKNOWN = -2;
+
+    private final InputStream in;
+    private int next = UNKNOWN;
+
+    public InputStreamInput(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @throws UncheckedIOException
+     *             if the look-ahead read fails
+     */
+    @Override
+    public boolean isFinished() {
+        if (next == UNKNOWN) {
+            try {
+                next = in.read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next == -1;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        int b = next == UNKNOWN ? in.read() : next;
+        if (b == -1) {
+            throw new EOFException();
+        }
+        next = UNKNOWN;
+        return (byte) b;
+    }
+
+    @Override
+    public int readBytes(byte[] buf, int off, int len) throws IOException {
+        if (len < 1 || isFinished()) {
+            return 0;
+        }
+        buf[off] = (byte) next;
+        next = UNKNOWN;
+        int read = len > 1 ? in.read(buf, off + 1, len - 1) : 0;
+        return 1 + Math.max(0, read);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n < 1 || isFinished()) {
+            return 0;
+        }
+        next = UNKNOWN;
+        return 1 + (n > 1 ? in.skip(n - 1) : 0);
+    }
+
+}
@@ -22,7 +22,9 @@ import static one.utopic.sparse.ebml.test.util.TestUtil.decode;
 import static one.utopic.sparse.ebml.test.util.TestUtil.encode;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.File;
@@ -34,6 +36,7 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collections;
@@ -44,9 +47,11 @@ import java.util.Set;
 import java.util.UUID;
 
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import one.utopic.sparse.ebml.EBMLCode;
 import one.utopic.sparse.ebml.EBMLFormat;
 import one.utopic.sparse.ebml.EBMLReader;
 import one.utopic.sparse.ebml.EBMLType;
@@ -54,11 +59,21 @@ import one.utopic.sparse.ebml.EBMLWriter;
 import one.utopic.sparse.ebml.format.ASCIIStringFormat;
 import one.utopic.sparse.ebml.format.BigDecimalFormat;
 import one.utopic.sparse.ebml.format.BigIntegerFormat;
+import one.utopic.sparse.ebml.format.BinaryDoubleFormat;
+import one.utopic.sparse.ebml.format.BinaryFloatFormat;
+import one.utopic.sparse.ebml.format.ByteBufferFormat;
 import one.utopic.sparse.ebml.format.BytesFormat;
 import one.utopic.sparse.ebml.format.DateFormat;
+import one.utopic.sparse.ebml.format.DeflateFormat;
+import one.utopic.sparse.ebml.format.DictionaryStringFormat;
+import one.utopic.sparse.ebml.format.DoubleArrayFormat;
 import one.utopic.sparse.ebml.format.DoubleFormat;
 import one.utopic.sparse.ebml.format.FloatFormat;
+import one.utopic.sparse.ebml.format.IntArrayFormat;
 import one.utopic.sparse.ebml.format.IntegerFormat;
+import one.utopic.sparse.ebml.format.LongArrayFormat;
+import one.utopic.sparse.ebml.format.LongDecimal;
+import one.utopic.sparse.ebml.format.LongDecimalFormat;
 import one.utopic.sparse.ebml.format.LongFormat;
 import one.utopic.sparse.ebml.format.UTF8StringFormat;
 
@@ -124,13 +139,36 @@ public final class EBMLFormatTest {
                 (testDate.getTime() - DateFormat.UNIX_EPOCH_DELAY));
         String testUTF8String = "Привет мир";
         byte[] testUTF8StringBytes = testUTF8String.getBytes(Charset.forName("UTF8"));
+        String testUnicodeString = "\u00e9\u4e16\u754c \ud83d\ude00 " + testString;
+        byte[] testUnicodeStringBytes = testUnicodeString.getBytes(Charset.forName("UTF8"));
         TEST_DATA = new TestData[] { //
 
                 TestData.of(BytesFormat.INSTANCE, testStringBytes, testStringBytes), //
 
+                TestData.of(ByteBufferFormat.INSTANCE, ByteBuffer.wrap(testStringBytes), testStringBytes), //
+
+                TestData.of(DeflateFormat.INSTANCE, new byte[] { 1, 2, 3 }, new byte[] { 0, 1, 2, 3 }), //
+                TestData.of(new DeflateFormat<>(UTF8StringFormat.INSTANCE), testString, concat(new byte[] { 0 }, testStringBytes)), //
+
+                TestData.of(DictionaryStringFormat.INSTANCE, testUTF8String, concat(new byte[] { -127, -128 }, testUTF8StringBytes)), //
+
                 TestData.of(ASCIIStringFormat.INSTANCE, testString, testStringBytes), //
 
                 TestData.of(UTF8StringFormat.INSTANCE, testUTF8String, testUTF8StringBytes), //
+                TestData.of(UTF8StringFormat.INSTANCE, testUnicodeString, testUnicodeStringBytes), //
+                TestData.of(UTF8StringFormat.INSTANCE, testString, testStringBytes), //
+
+                TestData.of(IntArrayFormat.INSTANCE, new int[] { 1, -1, 256 }, new byte[] { 0, 0, 0, 1, -1, -1, -1, -1, 0, 0, 1, 0 }), //
+                TestData.of(IntArrayFormat.VARINT, new int[] { 0, -1, 1, 64, Integer.MIN_VALUE },
+                        new byte[] { 0, 1, 2, -128, 1, -1, -1, -1, -1, 15 }), //
+                TestData.of(IntArrayFormat.DELTA, new int[] { 100, 101, 103, 103, 90 }, new byte[] { -56, 1, 2, 4, 0, 25 }), //
+                TestData.of(LongArrayFormat.INSTANCE, new long[] { 1, Long.MIN_VALUE },
+                        new byte[] { 0, 0, 0, 0, 0, 0, 0, 1, -128, 0, 0, 0, 0, 0, 0, 0 }), //
+                TestData.of(LongArrayFormat.VARINT, new long[] { Long.MAX_VALUE, Long.MIN_VALUE },
+                        new byte[] { -2, -1, -1, -1, -1, -1, -1, -1, -1, 1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1 }), //
+                TestData.of(LongArrayFormat.DELTA, new long[] { -5, 5 }, new byte[] { 9, 20 }), //
+                TestData.of(DoubleArrayFormat.INSTANCE, new double[] { 1.0d, -0.1d },
+                        new byte[] { 63, -16, 0, 0, 0, 0, 0, 0, -65, -71, -103, -103, -103, -103, -103, -102 }), //
 
                 TestData.of(IntegerFormat.INSTANCE, 0, new byte[] { 0 }), //
                 TestData.of(IntegerFormat.INSTANCE, 1, new byte[] { 1 }), //
@@ -154,6 +192,18 @@ public final class EBMLFormatTest {
                 TestData.of(FloatFormat.INSTANCE, Float.MAX_VALUE, new byte[] { -85, 120, -28, 127, -57, 120, -5, 86 }), //
                 TestData.of(FloatFormat.INSTANCE, Float.MIN_VALUE, new byte[] { -8, 4, -6, 121, 57, 48, -68, -47 }), //
 
+                TestData.of(BinaryFloatFormat.INSTANCE, 0.0f, new byte[] { 0, 0, 0, 0 }), //
+                TestData.of(BinaryFloatFormat.INSTANCE, 1.0f, new byte[] { 63, -128, 0, 0 }), //
+                TestData.of(BinaryFloatFormat.INSTANCE, -0.1f, new byte[] { -67, -52, -52, -51 }), //
+                TestData.of(BinaryFloatFormat.INSTANCE, Float.MIN_VALUE, new byte[] { 0, 0, 0, 1 }), //
+                TestData.of(BinaryFloatFormat.INSTANCE, Float.NaN, new byte[] { 127, -64, 0, 0 }), //
+
+                TestData.of(BinaryDoubleFormat.INSTANCE, 0.0d, new byte[] { 0, 0, 0, 0, 0, 0, 0, 0 }), //
+                TestData.of(BinaryDoubleFormat.INSTANCE, 1.0d, new byte[] { 63, -16, 0, 0, 0, 0, 0, 0 }), //
+                TestData.of(BinaryDoubleFormat.INSTANCE, -0.1d, new byte[] { -65, -71, -103, -103, -103, -103, -103, -102 }), //
+                TestData.of(BinaryDoubleFormat.INSTANCE, Double.MAX_VALUE, new byte[] { 127, -17, -1, -1, -1, -1, -1, -1 }), //
+                TestData.of(BinaryDoubleFormat.INSTANCE, Double.NEGATIVE_INFINITY, new byte[] { -1, -16, 0, 0, 0, 0, 0, 0 }), //
+
                 TestData.of(DoubleFormat.INSTANCE, 0.0d, new byte[] { -126, 0 }), //
                 TestData.of(DoubleFormat.INSTANCE, 0.1d, new byte[] { -126, 1 }), //
                 TestData.of(DoubleFormat.INSTANCE, -0.1d, new byte[] { -126, -1 }), //
@@ -194,6 +244,12 @@ public final class EBMLFormatTest {
                 TestData.of(BigDecimalFormat.INSTANCE, BigDecimal.valueOf(1, -1000000000), new byte[] { 8, 119, 53, -109, -1, 1 }), //
                 TestData.of(BigDecimalFormat.INSTANCE, BigDecimal.valueOf(1000000000, -1), new byte[] { -127, 59, -102, -54, 0 }), //
                 TestData.of(BigDecimalFormat.INSTANCE, BigDecimal.valueOf(-1, -1000000000), new byte[] { 8, 119, 53, -109, -1, -1 }), //
+                TestData.of(BigDecimalFormat.INSTANCE, BigDecimal.valueOf(12345, 2), new byte[] { -124, 48, 57 }), //
+                TestData.of(LongDecimalFormat.INSTANCE, LongDecimal.valueOf(-1, -1000000000), new byte[] { 8, 119, 53, -109, -1, -1 }), //
+                TestData.of(LongDecimalFormat.INSTANCE, LongDecimal.valueOf(-1000000000, -1), new byte[] { -127, -60, 101, 54, 0 }), //
+                TestData.of(LongDecimalFormat.INSTANCE, LongDecimal.valueOf(12345, 2), new byte[] { -124, 48, 57 }), //
+                TestData.of(LongDecimalFormat.INSTANCE, LongDecimal.valueOf(Long.MIN_VALUE, 0),
+                        new byte[] { -128, -128, 0, 0, 0, 0, 0, 0, 0 }), //
                 TestData.of(BigDecimalFormat.INSTANCE, BigDecimal.valueOf(-1000000000, -1), new byte[] { -127, -60, 101, 54, 0 }), //
         };
     }
@@ -205,10 +261,67 @@ public final class EBMLFormatTest {
         assertArrayEquals(d.formattedData, writeFormat(d.format, d.rawData));
     }
 
+    @DisplayName("CodeEqualsTest")
+    @Test
+    public void codeEqualsTest() {
+        EBMLCode packed = new EBMLCode(0x4286);
+        EBMLCode bytes = new EBMLCode(new byte[] { 0x42, (byte) 0x86 });
+        assertEquals(0x4286, bytes.longValue());
+        assertEquals(packed, bytes);
+        assertEquals(packed.hashCode(), bytes.hashCode());
+        assertNotEquals(packed, new EBMLCode(0x4287));
+        assertNotEquals(new EBMLCode(0x81), new EBMLCode(0x4001));
+        // longer than 8 bytes codes are compared by bytes
+        EBMLCode longCode = new EBMLCode(new byte[] { 0, (byte) 0x80, 0, 0, 0, 0, 0, 0, 1 });
+        EBMLCode sameLongCode = new EBMLCode(new byte[] { 0, (byte) 0x80, 0, 0, 0, 0, 0, 0, 1 });
+        EBMLCode otherLongCode = new EBMLCode(new byte[] { 0, (byte) 0x80, 0, 0, 0, 0, 0, 0, 2 });
+        assertEquals(-1, longCode.longValue());
+        assertEquals(longCode, sameLongCode);
+        assertEquals(longCode.hashCode(), sameLongCode.hashCode());
+        assertNotEquals(longCode, otherLongCode);
+        assertNotEquals(longCode, packed);
+    }
+
+    @DisplayName("CodeInternTest")
+    @Test
+    public void codeInternTest() {
+        EBMLCode code = new EBMLCode(0x1F43B675);
+        EBMLCode interned = code.intern();
+        assertSame(interned, new EBMLCode(0x1F43B675).intern());
+        assertEquals(code, interned);
+        for (int i = 0; i < EBMLCode.INTERN_LIMIT; i++) {
+            new EBMLCode(0x10000000 + i).intern();
+        }
+        // interned codes stay canonical, new ones are returned as is
+        assertSame(interned, new EBMLCode(0x1F43B675).intern());
+        EBMLCode late = new EBMLCode(0x1E000000);
+        assertSame(late, late.intern());
+        EBMLCode sameLate = new EBMLCode(0x1E000000);
+        assertSame(sameLate, sameLate.intern());
+    }
+
+    @DisplayName("DeprecatedDateFormatTest")
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedDateFormatTest() {
+        Date date = new Date();
+        DateFormat format = new DateFormat(BigIntegerFormat.INSTANCE);
+        byte[] formatted = formatLong(date.getTime() - DateFormat.UNIX_EPOCH_DELAY);
+        assertEquals(date, format.readFormat(formatted));
+        assertEquals(date, format.readFormat(ByteBuffer.wrap(formatted)));
+        assertArrayEquals(formatted, writeFormat(format, date));
+    }
+
     private <T> byte[] writeFormat(EBMLFormat<T> format, T data) {
         return encode(w -> format.write(w, data));
     }
 
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
     private static byte[] formatLong(long value) {
         return BigInteger.valueOf(value).toByteArray();
     }
@@ -227,6 +340,14 @@ public final class EBMLFormatTest {
                 assertEquals(d.rawData, read);
             }
         });
+        decode(ByteBuffer.wrap(d.formattedData), EBMLType.Context.EMPTY, r -> {
+            T read = d.format.read(r);
+            if (null != read && read.getClass().isArray()) {
+                assertGenericEquals(d.rawData, read);
+            } else {
+                assertEquals(d.rawData, read);
+            }
+        });
     }
 
     static <T> void assertGenericEquals(T expect, T actual) {
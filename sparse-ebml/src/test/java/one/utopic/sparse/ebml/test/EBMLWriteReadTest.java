@@ -27,19 +27,60 @@ import static one.utopic.sparse.ebml.test.util.TestUtil.encode;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
 
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import one.utopic.sparse.api.Event.CommonEventType;
+import one.utopic.sparse.api.exception.SparseReaderException;
+import one.utopic.sparse.api.exception.SparseWriterException;
+import one.utopic.sparse.ebml.EBMLCode;
+import one.utopic.sparse.ebml.EBMLContext;
 import one.utopic.sparse.ebml.EBMLEvent;
+import one.utopic.sparse.ebml.EBMLFormatUtil;
+import one.utopic.sparse.ebml.EBMLReader;
+import one.utopic.sparse.ebml.EBMLType;
+import one.utopic.sparse.ebml.EBMLWriter;
+import one.utopic.sparse.ebml.format.ByteBufferFormat;
 import one.utopic.sparse.ebml.format.BytesFormat;
+import one.utopic.sparse.ebml.format.DeflateFormat;
+import one.utopic.sparse.ebml.format.DictionaryStringFormat;
+import one.utopic.sparse.ebml.format.IntegerFormat;
+import one.utopic.sparse.ebml.format.LongArrayFormat;
+import one.utopic.sparse.ebml.format.LongFormat;
+import one.utopic.sparse.ebml.format.StringCache;
 import one.utopic.sparse.ebml.format.UTF8StringFormat;
+import one.utopic.sparse.ebml.io.ByteArrayOutput;
+import one.utopic.sparse.ebml.io.ByteBufferInput;
+import one.utopic.sparse.ebml.io.ByteBufferOutput;
+import one.utopic.sparse.ebml.io.ChannelOutput;
+import one.utopic.sparse.ebml.io.GatheringChannelOutput;
+import one.utopic.sparse.ebml.io.InputStreamInput;
+import one.utopic.sparse.ebml.test.util.ByteArrayStreamOutput;
 import one.utopic.sparse.ebml.test.util.TestType.Context;
 
 @DisplayName("EBMLWriteReadTest")
@@ -68,6 +109,629 @@ public class EBMLWriteReadTest {
         });
     }
 
+    @DisplayName("ByteBufferReadTest")
+    @ParameterizedTest(name = "Size {arguments}K")
+    @ValueSource(ints = { 1000, 100, 10, 1 })
+    void byteBufferReadTest(int size) throws IOException {
+        byte[] byteData = new byte[size * 1024];
+        Arrays.fill(byteData, (byte) size);
+        byte[] encData = encode(w -> {
+            w.accept(new EBMLEvent(TYPE_1_1, EBMLEvent.CommonEventType.BEGIN));
+            BytesFormat.INSTANCE.write(w, byteData);
+            w.accept(new EBMLEvent(TYPE_1_1, EBMLEvent.CommonEventType.END));
+            w.accept(new EBMLEvent(TYPE_2_1, EBMLEvent.CommonEventType.BEGIN));
+            BytesFormat.INSTANCE.write(w, byteData);
+            w.accept(new EBMLEvent(TYPE_2_1, EBMLEvent.CommonEventType.END));
+        });
+        decode(ByteBuffer.wrap(encData), Context.ROOT, r -> {
+            int count = 0;
+            while (r.hasNext()) {
+                EBMLEvent event = r.next();
+                if (CommonEventType.BEGIN.equals(event.getType())) {
+                    if (TYPE_1_1.equals(event.get())) {
+                        ByteBuffer result = ByteBufferFormat.INSTANCE.read(r);
+                        assertTrue(result.isReadOnly());
+                        assertEquals(ByteBuffer.wrap(byteData), result);
+                    } else {
+                        assertArrayEquals(byteData, BytesFormat.INSTANCE.read(r));
+                    }
+                    count++;
+                }
+            }
+            assertEquals(2, count);
+        });
+    }
+
+    @DisplayName("StreamWriteReadTest")
+    @ParameterizedTest(name = "Size {arguments}K")
+    @ValueSource(ints = { 1000, 100, 10, 1 })
+    void streamWriteReadTest(int size) throws IOException {
+        byte[] byteData = new byte[size * 1024];
+        new Random(size).nextBytes(byteData);
+        byte[] encData = encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            BytesFormat.INSTANCE.write(w, byteData);
+            w.accept(EBMLEvent.end(TYPE_1_1));
+            w.accept(EBMLEvent.begin(TYPE_2_1));
+            BytesFormat.INSTANCE.write(w, byteData);
+            w.accept(EBMLEvent.end(TYPE_2_1));
+        });
+        assertArrayEquals(encData, encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            w.writeStream(new ByteArrayInputStream(byteData), byteData.length);
+            w.accept(EBMLEvent.end(TYPE_1_1));
+            w.accept(EBMLEvent.begin(TYPE_2_1));
+            w.writeStream(new ByteArrayInputStream(byteData), byteData.length);
+            w.accept(EBMLEvent.end(TYPE_2_1));
+        }));
+        // bulk input and byte by byte fallback
+        for (boolean bulk : new boolean[] { true, false }) {
+            decode(encData, Context.ROOT, bulk, r -> {
+                assertSame(EBMLEvent.begin(TYPE_1_1), r.next());
+                try (InputStream is = r.openStream(); ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+                    byte[] buf = new byte[4096];
+                    for (int read; (read = is.read(buf)) != -1;) {
+                        os.write(buf, 0, read);
+                    }
+                    assertArrayEquals(byteData, os.toByteArray());
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+                assertSame(EBMLEvent.end(TYPE_1_1), r.next());
+                assertSame(EBMLEvent.begin(TYPE_2_1), r.next());
+                try (InputStream is = r.openStream()) {
+                    assertEquals(0xFF & byteData[0], is.read());
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+                assertSame(EBMLEvent.end(TYPE_2_1), r.next());
+            });
+        }
+        encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            assertThrows(SparseWriterException.class, () -> w.writeStream(new ByteArrayInputStream(byteData), -1));
+            w.accept(EBMLEvent.end(TYPE_1_1));
+            w.begin(TYPE_2_1, byteData.length);
+            assertThrows(SparseWriterException.class, () -> w.writeStream(new ByteArrayInputStream(byteData), -byteData.length));
+            w.writeStream(new ByteArrayInputStream(byteData), byteData.length);
+            w.accept(EBMLEvent.end(TYPE_2_1));
+        });
+    }
+
+    @DisplayName("DeclaredSizeWriteTest")
+    @ParameterizedTest(name = "Count {arguments}")
+    @ValueSource(ints = { 1000, 100, 10, 1 })
+    void declaredSizeWriteTest(int count) {
+        String data = UUID.randomUUID().toString();
+        int dataSize = data.length();
+        byte[] encData = encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            for (int i = 0; i < count; i++) {
+                w.accept(EBMLEvent.begin(TYPE_1_2));
+                UTF8StringFormat.INSTANCE.write(w, data);
+                w.accept(EBMLEvent.end(TYPE_1_2));
+                w.accept(EBMLEvent.begin(TYPE_2_1));
+                w.accept(EBMLEvent.begin(TYPE_2_2));
+                UTF8StringFormat.INSTANCE.write(w, data);
+                w.accept(EBMLEvent.end(TYPE_2_2));
+                w.accept(EBMLEvent.end(TYPE_2_1));
+            }
+            w.accept(EBMLEvent.end(TYPE_1_1));
+        });
+        assertArrayEquals(encData, encode(w -> {
+            w.begin(TYPE_1_1, count * (2 + dataSize + 2 + 2 + dataSize));
+            for (int i = 0; i < count; i++) {
+                w.begin(TYPE_1_2, dataSize);
+                UTF8StringFormat.INSTANCE.write(w, data);
+                w.accept(EBMLEvent.end(TYPE_1_2));
+                w.accept(EBMLEvent.begin(TYPE_2_1));
+                w.begin(TYPE_2_2, dataSize);
+                UTF8StringFormat.INSTANCE.write(w, data);
+                w.accept(EBMLEvent.end(TYPE_2_2));
+                w.accept(EBMLEvent.end(TYPE_2_1));
+            }
+            w.accept(EBMLEvent.end(TYPE_1_1));
+            assertTrue(w.isEmpty());
+        }));
+    }
+
+    @DisplayName("SeekableWriteTest")
+    @ParameterizedTest(name = "Deep {arguments}")
+    @ValueSource(ints = { 1000, 100, 10, 1 })
+    void seekableWriteTest(int deep) throws IOException {
+        String data = UUID.randomUUID().toString();
+        File file = File.createTempFile(getClass().getSimpleName(), ".ebml");
+        file.deleteOnExit();
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            try (ChannelOutput out = new ChannelOutput(fc, 256)) {
+                EBMLWriter w = EBMLWriter.seekable(out);
+                for (int i = 0; i < deep; i++) {
+                    w.accept(EBMLEvent.begin(TYPE_1_1));
+                    w.accept(EBMLEvent.begin(TYPE_2_1));
+                    w.accept(EBMLEvent.begin(TYPE_2_2));
+                    UTF8StringFormat.INSTANCE.write(w, data);
+                    w.accept(EBMLEvent.end(TYPE_2_2));
+                    w.accept(EBMLEvent.end(TYPE_2_1));
+                }
+                for (int i = 0; i < deep; i++) {
+                    w.accept(EBMLEvent.end(TYPE_1_1));
+                }
+                assertTrue(w.isEmpty());
+            }
+            assertEquals(deep * (3 * 9 + data.length()), file.length());
+        }
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            decode(fc.map(MapMode.READ_ONLY, 0, fc.size()), Context.ROOT, r -> {
+                int count = 0, level = 0;
+                while (r.hasNext()) {
+                    EBMLEvent event = r.next();
+                    if (CommonEventType.BEGIN.equals(event.getType())) {
+                        level++;
+                        if (TYPE_2_2.equals(event.get())) {
+                            assertEquals(data, UTF8StringFormat.INSTANCE.read(r));
+                            count++;
+                        }
+                    } else {
+                        level--;
+                    }
+                }
+                assertEquals(deep, count);
+                assertEquals(0, level);
+            });
+        }
+    }
+
+    @DisplayName("PrimitiveTest")
+    @ParameterizedTest(name = "Value {arguments}")
+    @ValueSource(longs = { 0, 1, -1, 255, -256, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE })
+    void primitiveTest(long value) {
+        byte[] encData = encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            w.accept(EBMLEvent.begin(TYPE_1_2));
+            w.writeLong(value);
+            w.accept(EBMLEvent.end(TYPE_1_2));
+            w.accept(EBMLEvent.begin(TYPE_2_1));
+            w.writeInt((int) value);
+            w.accept(EBMLEvent.end(TYPE_2_1));
+            w.accept(EBMLEvent.end(TYPE_1_1));
+        });
+        assertArrayEquals(encData, encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            w.accept(EBMLEvent.begin(TYPE_1_2));
+            LongFormat.INSTANCE.write(w, value);
+            w.accept(EBMLEvent.end(TYPE_1_2));
+            w.accept(EBMLEvent.begin(TYPE_2_1));
+            IntegerFormat.INSTANCE.write(w, (int) value);
+            w.accept(EBMLEvent.end(TYPE_2_1));
+            w.accept(EBMLEvent.end(TYPE_1_1));
+        }));
+        decode(encData, Context.ROOT, r -> {
+            assertSame(EBMLEvent.begin(TYPE_1_1), r.next());
+            assertSame(EBMLEvent.begin(TYPE_1_2), r.next());
+            assertEquals(value, r.readLong());
+            assertSame(EBMLEvent.end(TYPE_1_2), r.next());
+            assertSame(EBMLEvent.begin(TYPE_2_1), r.next());
+            assertEquals((int) value, r.readInt());
+            assertSame(EBMLEvent.end(TYPE_2_1), r.next());
+            assertSame(EBMLEvent.end(TYPE_1_1), r.next());
+        });
+    }
+
+    @DisplayName("ArenaWriteTest")
+    @ParameterizedTest(name = "Size {arguments}")
+    @ValueSource(ints = { 0, 1, 126, 127, 128, 16382, 16383, 16384, 100000 })
+    void arenaWriteTest(int size) throws IOException {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        Consumer<EBMLWriter> document = w -> {
+            for (int i = 0; i < 2; i++) {
+                w.accept(EBMLEvent.begin(TYPE_1_1));
+                w.accept(EBMLEvent.begin(TYPE_1_1));
+                w.accept(EBMLEvent.begin(TYPE_2_1));
+                w.accept(EBMLEvent.begin(TYPE_2_2));
+                BytesFormat.INSTANCE.write(w, data);
+                w.accept(EBMLEvent.end(TYPE_2_2));
+                w.accept(EBMLEvent.end(TYPE_2_1));
+                w.accept(EBMLEvent.end(TYPE_1_1));
+                w.accept(EBMLEvent.begin(TYPE_1_2));
+                w.writeLong(size);
+                w.accept(EBMLEvent.end(TYPE_1_2));
+                w.accept(EBMLEvent.end(TYPE_1_1));
+            }
+        };
+        byte[] encData = encode(document);
+        ByteArrayOutput buffer = new ByteArrayOutput();
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            EBMLWriter w = new EBMLWriter(new ByteArrayStreamOutput(baos), buffer);
+            document.accept(w);
+            assertTrue(w.isEmpty());
+            assertArrayEquals(encData, baos.toByteArray());
+        }
+    }
+
+    @DisplayName("BulkWriteTest")
+    @ParameterizedTest(name = "Size {arguments}")
+    @ValueSource(ints = { 0, 100, 1024, 100000 })
+    void bulkWriteTest(int size) throws IOException {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        Consumer<EBMLWriter> document = w -> {
+            for (int i = 0; i < 100; i++) {
+                w.accept(EBMLEvent.begin(TYPE_1_1));
+                w.accept(EBMLEvent.begin(TYPE_2_1));
+                BytesFormat.INSTANCE.write(w, data);
+                w.accept(EBMLEvent.end(TYPE_2_1));
+                w.accept(EBMLEvent.begin(TYPE_1_2));
+                ByteBufferFormat.INSTANCE.write(w, ByteBuffer.wrap(data));
+                w.accept(EBMLEvent.end(TYPE_1_2));
+                w.accept(EBMLEvent.end(TYPE_1_1));
+            }
+        };
+        byte[] encData = encode(document);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(encData.length);
+        document.accept(new EBMLWriter(new ByteBufferOutput(buffer)));
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        assertEquals(ByteBuffer.wrap(encData), buffer);
+        File file = File.createTempFile(getClass().getSimpleName(), ".ebml");
+        file.deleteOnExit();
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            try (GatheringChannelOutput out = new GatheringChannelOutput(fc, 256, 1024)) {
+                document.accept(new EBMLWriter(out));
+            }
+        }
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            assertEquals(ByteBuffer.wrap(encData), fc.map(MapMode.READ_ONLY, 0, fc.size()));
+        }
+    }
+
+    @DisplayName("UTF8EncodeTest")
+    @ParameterizedTest(name = "Length {arguments}")
+    @ValueSource(ints = { 1, 1000, 4093, 10000 })
+    void utf8EncodeTest(int length) throws IOException {
+        Random random = new Random(length);
+        char[] sample = { 'a', '\u00e9', '\u20ac', '\ud83d', '\ude00' };
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(sample[random.nextInt(sample.length)]);
+        }
+        String data = sb.toString();
+        byte[] expected = data.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutput out = new ByteArrayOutput();
+        UTF8StringFormat.encode(out, data);
+        assertArrayEquals(expected, out.toByteArray());
+        assertEquals(expected.length, UTF8StringFormat.encodedLength(data));
+    }
+
+    @DisplayName("LongArrayTest")
+    @ParameterizedTest(name = "Length {arguments}")
+    @ValueSource(ints = { 0, 1, 1024, 5000 })
+    void longArrayTest(int length) {
+        Random random = new Random(length);
+        long[] data = new long[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = random.nextLong() >> random.nextInt(Long.SIZE);
+        }
+        for (LongArrayFormat format : new LongArrayFormat[] { LongArrayFormat.INSTANCE, LongArrayFormat.VARINT, LongArrayFormat.DELTA }) {
+            byte[] encData = encode(w -> {
+                w.accept(EBMLEvent.begin(TYPE_1_1));
+                w.accept(EBMLEvent.begin(TYPE_1_2));
+                format.write(w, data);
+                w.accept(EBMLEvent.end(TYPE_1_2));
+                w.accept(EBMLEvent.end(TYPE_1_1));
+            });
+            decode(encData, Context.ROOT, r -> {
+                assertSame(EBMLEvent.begin(TYPE_1_1), r.next());
+                assertSame(EBMLEvent.begin(TYPE_1_2), r.next());
+                assertArrayEquals(data, format.read(r), format.toString());
+                assertSame(EBMLEvent.end(TYPE_1_2), r.next());
+            });
+        }
+    }
+
+    @DisplayName("VintTest")
+    @ParameterizedTest(name = "Value {arguments}")
+    @ValueSource(longs = { 0, 1, 126, 127, 128, 16383, 16384, 1L << 47, 1L << 56, Long.MAX_VALUE })
+    void vintTest(long value) throws IOException {
+        ByteArrayOutput out = new ByteArrayOutput();
+        int length = EBMLFormatUtil.writeVint(out, value);
+        assertEquals(EBMLFormatUtil.vintLength(value), length);
+        assertEquals(length, out.size());
+        if (value < 1L << 47) {
+            ByteArrayOutput code = new ByteArrayOutput();
+            EBMLFormatUtil.writeCode(code, BigInteger.valueOf(value).toByteArray());
+            assertArrayEquals(code.toByteArray(), out.toByteArray());
+        }
+        for (int i = 0; i < 3; i++) {
+            EBMLFormatUtil.writeVint(out, value);
+        }
+        byte[] data = out.toByteArray();
+        assertEquals(value, EBMLFormatUtil.readVint(new ByteBufferInput(ByteBuffer.wrap(data)), true));
+        assertEquals(value, EBMLFormatUtil.readVint(ByteBuffer.wrap(data), length * 3, true));
+        long[] values = new long[4];
+        assertEquals(data.length, EBMLFormatUtil.readVints(ByteBuffer.wrap(data), 0, values, 0, values.length, true));
+        for (long v : values) {
+            assertEquals(value, v);
+        }
+    }
+
+    @DisplayName("StringCacheTest")
+    @ParameterizedTest(name = "Count {arguments}")
+    @ValueSource(ints = { 1000, 100, 10, 1 })
+    void stringCacheTest(int count) {
+        String[] labels = { "host", "tag", "\u00e9t\u00e9", "label" };
+        byte[] encData = encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            for (int i = 0; i < count; i++) {
+                w.accept(EBMLEvent.begin(TYPE_2_1));
+                UTF8StringFormat.INSTANCE.write(w, labels[i % labels.length]);
+                w.accept(EBMLEvent.end(TYPE_2_1));
+            }
+            w.accept(EBMLEvent.end(TYPE_1_1));
+        });
+        StringCache cache = new StringCache(1024);
+        UTF8StringFormat format = new UTF8StringFormat(cache);
+        String[] read = new String[labels.length];
+        decode(ByteBuffer.wrap(encData), Context.ROOT, r -> {
+            assertSame(EBMLEvent.begin(TYPE_1_1), r.next());
+            for (int i = 0; i < count; i++) {
+                assertSame(EBMLEvent.begin(TYPE_2_1), r.next());
+                String value = format.read(r);
+                assertEquals(labels[i % labels.length], value);
+                if (i < labels.length) {
+                    read[i] = value;
+                } else {
+                    assertSame(read[i % labels.length], value);
+                }
+                assertSame(EBMLEvent.end(TYPE_2_1), r.next());
+            }
+            assertSame(EBMLEvent.end(TYPE_1_1), r.next());
+        });
+        assertEquals(Math.min(count, labels.length), cache.getMissCount());
+        assertEquals(count - Math.min(count, labels.length), cache.getHitCount());
+    }
+
+    @DisplayName("BinaryFloatTest")
+    @ParameterizedTest(name = "Value {arguments}")
+    @ValueSource(doubles = { 0, -0.0, 0.1, -1.1, Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN, Double.NEGATIVE_INFINITY })
+    void binaryFloatTest(double value) {
+        byte[] encData = encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            w.accept(EBMLEvent.begin(TYPE_1_2));
+            w.writeDouble(value);
+            w.accept(EBMLEvent.end(TYPE_1_2));
+            w.accept(EBMLEvent.begin(TYPE_2_1));
+            w.writeFloat((float) value);
+            w.accept(EBMLEvent.end(TYPE_2_1));
+            w.accept(EBMLEvent.end(TYPE_1_1));
+        });
+        decode(encData, Context.ROOT, r -> {
+            assertSame(EBMLEvent.begin(TYPE_1_1), r.next());
+            assertSame(EBMLEvent.begin(TYPE_1_2), r.next());
+            assertEquals(value, r.readDouble());
+            assertSame(EBMLEvent.end(TYPE_1_2), r.next());
+            assertSame(EBMLEvent.begin(TYPE_2_1), r.next());
+            assertEquals((float) value, r.readFloat());
+            assertSame(EBMLEvent.end(TYPE_2_1), r.next());
+            assertSame(EBMLEvent.end(TYPE_1_1), r.next());
+        });
+    }
+
+    @DisplayName("DeflateTest")
+    @ParameterizedTest(name = "Count {arguments}")
+    @ValueSource(ints = { 1000, 100, 10, 1 })
+    void deflateTest(int count) throws IOException {
+        String data = UUID.randomUUID().toString();
+        ByteArrayOutput subtree = new ByteArrayOutput();
+        EBMLWriter sw = new EBMLWriter(subtree);
+        for (int i = 0; i < count; i++) {
+            sw.accept(EBMLEvent.begin(TYPE_2_1));
+            sw.accept(EBMLEvent.begin(TYPE_2_2));
+            UTF8StringFormat.INSTANCE.write(sw, data);
+            sw.accept(EBMLEvent.end(TYPE_2_2));
+            sw.accept(EBMLEvent.end(TYPE_2_1));
+        }
+        // plain writer uses minimal size fields over seekable output as well
+        assertEquals(count * (2 * 2 + data.length()), subtree.size());
+        byte[] encData = encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            w.accept(EBMLEvent.begin(TYPE_1_2));
+            DeflateFormat.INSTANCE.write(w, subtree.toByteArray());
+            w.accept(EBMLEvent.end(TYPE_1_2));
+            w.accept(EBMLEvent.begin(TYPE_1_2));
+            new DeflateFormat<>(UTF8StringFormat.INSTANCE, Deflater.BEST_SPEED, 0).write(w, data);
+            w.accept(EBMLEvent.end(TYPE_1_2));
+            w.accept(EBMLEvent.end(TYPE_1_1));
+        });
+        if (count > 1) {
+            assertTrue(encData.length < subtree.size());
+        }
+        decode(encData, Context.ROOT, r -> {
+            assertSame(EBMLEvent.begin(TYPE_1_1), r.next());
+            assertSame(EBMLEvent.begin(TYPE_1_2), r.next());
+            try (InputStream in = DeflateFormat.INSTANCE.openStream(r)) {
+                EBMLReader sr = new EBMLReader(new InputStreamInput(in), Context.ROOT);
+                int read = 0;
+                while (sr.hasNext()) {
+                    assertSame(EBMLEvent.begin(TYPE_2_1), sr.next());
+                    assertSame(EBMLEvent.begin(TYPE_2_2), sr.next());
+                    assertEquals(data, UTF8StringFormat.INSTANCE.read(sr));
+                    assertSame(EBMLEvent.end(TYPE_2_2), sr.next());
+                    assertSame(EBMLEvent.end(TYPE_2_1), sr.next());
+                    read++;
+                }
+                assertEquals(count, read);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            assertSame(EBMLEvent.end(TYPE_1_2), r.next());
+            assertSame(EBMLEvent.begin(TYPE_1_2), r.next());
+            assertEquals(data, new DeflateFormat<>(UTF8StringFormat.INSTANCE).read(r));
+            assertSame(EBMLEvent.end(TYPE_1_2), r.next());
+            assertSame(EBMLEvent.end(TYPE_1_1), r.next());
+        });
+        // forged inflated size is rejected or not allocated upfront
+        ByteArrayOutput forged = new ByteArrayOutput();
+        forged.writeByte((byte) 1);
+        EBMLFormatUtil.writeVint(forged, Integer.MAX_VALUE);
+        forged.writeBytes(new byte[] { 0x78, (byte) 0x9C, 0x03, 0x00 }, 0, 4);
+        assertThrows(IllegalArgumentException.class, () -> DeflateFormat.INSTANCE.readFormat(forged.toByteArray()));
+        assertThrows(IllegalArgumentException.class,
+                () -> new DeflateFormat<>(BytesFormat.INSTANCE, Deflater.DEFAULT_COMPRESSION, DeflateFormat.DEFAULT_THRESHOLD,
+                        Integer.MAX_VALUE).readFormat(forged.toByteArray()));
+        // inflated data longer than declared size is rejected
+        Deflater deflater = new Deflater();
+        deflater.setInput(data.getBytes(StandardCharsets.US_ASCII));
+        deflater.finish();
+        byte[] deflated = new byte[128];
+        int deflatedLength = deflater.deflate(deflated);
+        deflater.end();
+        ByteArrayOutput longer = new ByteArrayOutput();
+        longer.writeByte((byte) 1);
+        EBMLFormatUtil.writeVint(longer, data.length() - 1);
+        longer.writeBytes(deflated, 0, deflatedLength);
+        assertThrows(IllegalArgumentException.class, () -> DeflateFormat.INSTANCE.readFormat(longer.toByteArray()));
+        // reader stays usable after unknown header
+        byte[] unknown = encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            w.accept(EBMLEvent.begin(TYPE_1_2));
+            BytesFormat.INSTANCE.write(w, new byte[] { 7, 1, 2 });
+            w.accept(EBMLEvent.end(TYPE_1_2));
+            w.accept(EBMLEvent.end(TYPE_1_1));
+        });
+        decode(unknown, Context.ROOT, r -> {
+            assertSame(EBMLEvent.begin(TYPE_1_1), r.next());
+            assertSame(EBMLEvent.begin(TYPE_1_2), r.next());
+            assertThrows(SparseReaderException.class, () -> DeflateFormat.INSTANCE.openStream(r));
+            assertSame(EBMLEvent.end(TYPE_1_2), r.next());
+            assertSame(EBMLEvent.end(TYPE_1_1), r.next());
+        });
+    }
+
+    @DisplayName("DictionaryStringTest")
+    @ParameterizedTest(name = "Capacity {arguments}")
+    @ValueSource(ints = { 0, 2, 3, 1024 })
+    void dictionaryStringTest(int capacity) {
+        String[] labels = { "host", "tag", "\u00e9t\u00e9" };
+        int count = 100;
+        DictionaryStringFormat writeFormat = new DictionaryStringFormat(capacity);
+        byte[] encData = encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            for (int i = 0; i < count; i++) {
+                w.accept(EBMLEvent.begin(TYPE_1_2));
+                writeFormat.write(w, labels[i % labels.length]);
+                w.accept(EBMLEvent.end(TYPE_1_2));
+            }
+            w.accept(EBMLEvent.end(TYPE_1_1));
+        });
+        int header = encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_2));
+            w.accept(EBMLEvent.end(TYPE_1_2));
+        }).length;
+        int rootHeader = encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            w.accept(EBMLEvent.end(TYPE_1_1));
+        }).length;
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int length = UTF8StringFormat.encodedLength(labels[i % labels.length]);
+            if (capacity == 0) {
+                size += header + 1 + length;
+            } else if (capacity >= labels.length && i >= labels.length) {
+                size += header + EBMLFormatUtil.vintLength(i % labels.length + 2);
+            } else {
+                size += header + 1 + EBMLFormatUtil.vintLength(i) + length;
+            }
+        }
+        assertEquals(rootHeader - 1 + EBMLFormatUtil.vintLength(size) + size, encData.length);
+        DictionaryStringFormat readFormat = new DictionaryStringFormat(capacity);
+        decode(encData, Context.ROOT, r -> {
+            assertSame(EBMLEvent.begin(TYPE_1_1), r.next());
+            for (int i = 0; i < count; i++) {
+                assertSame(EBMLEvent.begin(TYPE_1_2), r.next());
+                assertEquals(labels[i % labels.length], readFormat.read(r));
+                assertSame(EBMLEvent.end(TYPE_1_2), r.next());
+            }
+            assertSame(EBMLEvent.end(TYPE_1_1), r.next());
+        });
+    }
+
+    @Test
+    void dictionaryStringSessionTest() {
+        DictionaryStringFormat format = DictionaryStringFormat.INSTANCE;
+        byte[] encData = encode(w -> {
+            w.accept(EBMLEvent.begin(TYPE_1_1));
+            w.accept(EBMLEvent.begin(TYPE_1_2));
+            format.write(w, "host");
+            assertThrows(SparseWriterException.class, () -> format.write(w, "tag"));
+            w.accept(EBMLEvent.end(TYPE_1_2));
+            for (String label : new String[] { "tag", "host" }) {
+                w.accept(EBMLEvent.begin(TYPE_1_2));
+                format.write(w, label);
+                w.accept(EBMLEvent.end(TYPE_1_2));
+            }
+            w.accept(EBMLEvent.end(TYPE_1_1));
+        });
+        decode(encData, Context.ROOT, r -> {
+            assertSame(EBMLEvent.begin(TYPE_1_1), r.next());
+            for (String label : new String[] { "host", "tag", "host" }) {
+                assertSame(EBMLEvent.begin(TYPE_1_2), r.next());
+                assertEquals(label, format.read(r));
+                assertSame(EBMLEvent.end(TYPE_1_2), r.next());
+            }
+        });
+        decode(encData, Context.ROOT, r -> {
+            assertSame(EBMLEvent.begin(TYPE_1_1), r.next());
+            assertSame(EBMLEvent.begin(TYPE_1_2), r.next());
+            r.skip();
+            assertSame(EBMLEvent.end(TYPE_1_2), r.next());
+            assertSame(EBMLEvent.begin(TYPE_1_2), r.next());
+            assertEquals("tag", format.read(r));
+            assertSame(EBMLEvent.end(TYPE_1_2), r.next());
+            assertSame(EBMLEvent.begin(TYPE_1_2), r.next());
+            assertThrows(SparseReaderException.class, () -> format.read(r));
+        });
+    }
+
+    @Test
+    void eventCacheTest() {
+        EBMLType[] types = new EBMLType[4096];
+        EBMLEvent[] begins = new EBMLEvent[types.length];
+        for (int i = 0; i < types.length; i++) {
+            long code = 0x4000 + i;
+            types[i] = new EBMLType() {
+
+                @Override
+                public EBMLCode getEBMLCode() {
+                    return new EBMLCode(code);
+                }
+
+                @Override
+                public EBMLType.Context getContext() {
+                    return EBMLType.Context.EMPTY;
+                }
+
+            };
+            begins[i] = EBMLEvent.begin(types[i]);
+            assertSame(types[i], begins[i].get());
+            assertSame(CommonEventType.BEGIN, begins[i].getType());
+            assertSame(begins[i], EBMLEvent.begin(types[i]));
+            assertSame(types[i], EBMLEvent.end(types[i]).get());
+            assertSame(CommonEventType.END, EBMLEvent.end(types[i]).getType());
+        }
+        int evicted = 0;
+        for (int i = 0; i < types.length; i++) {
+            EBMLEvent begin = EBMLEvent.begin(types[i]);
+            assertSame(types[i], begin.get());
+            evicted += begin == begins[i] ? 0 : 1;
+        }
+        // cache is bounded, enum types keep their events
+        assertTrue(evicted > 0);
+        assertSame(TYPE_1_1, EBMLEvent.begin(TYPE_1_1).get());
+        assertSame(EBMLEvent.begin(TYPE_1_1), EBMLEvent.begin(TYPE_1_1));
+        assertSame(EBMLEvent.end(TYPE_2_2), EBMLEvent.end(TYPE_2_2));
+    }
+
     @DisplayName("HierarchyDeepTest")
     @ParameterizedTest(name = "Deep {arguments}")
     @ValueSource(ints = { 1000, 100, 10, 1 })
@@ -114,4 +778,97 @@ public class EBMLWriteReadTest {
         });
     }
 
+    @DisplayName("SkipTest")
+    @ParameterizedTest(name = "Deep {arguments}")
+    @ValueSource(ints = { 100, 10, 1 })
+    void skipTest(int deep) {
+        String data = UUID.randomUUID().toString();
+        byte[] encData = encode(w -> {
+            for (int i = 0; i < deep; i++) {
+                w.accept(new EBMLEvent(TYPE_1_1, EBMLEvent.CommonEventType.BEGIN));
+                {
+                    w.accept(new EBMLEvent(TYPE_1_2, EBMLEvent.CommonEventType.BEGIN));
+                    UTF8StringFormat.INSTANCE.write(w, data);
+                    w.accept(new EBMLEvent(TYPE_1_2, EBMLEvent.CommonEventType.END));
+
+                    w.accept(new EBMLEvent(TYPE_2_1, EBMLEvent.CommonEventType.BEGIN));
+                    w.accept(new EBMLEvent(TYPE_2_2, EBMLEvent.CommonEventType.BEGIN));
+                    UTF8StringFormat.INSTANCE.write(w, data);
+                    w.accept(new EBMLEvent(TYPE_2_2, EBMLEvent.CommonEventType.END));
+                    w.accept(new EBMLEvent(TYPE_2_1, EBMLEvent.CommonEventType.END));
+                }
+            }
+            for (int i = 0; i < deep; i++) {
+                w.accept(new EBMLEvent(TYPE_1_1, EBMLEvent.CommonEventType.END));
+            }
+        });
+        // bulk input and byte by byte fallback
+        for (boolean bulk : new boolean[] { true, false }) {
+            decode(encData, Context.ROOT, bulk, r -> {
+                int begins = 0, ends = 0;
+                while (r.hasNext()) {
+                    EBMLEvent event = r.next();
+                    if (CommonEventType.BEGIN.equals(event.getType())) {
+                        begins++;
+                        if (TYPE_1_2.equals(event.get())) {
+                            EBMLEvent end = r.skipSubtree();
+                            assertSame(EBMLEvent.end(TYPE_1_2), end);
+                            ends++;
+                        } else if (TYPE_2_1.equals(event.get())) {
+                            r.skip();
+                        }
+                    } else {
+                        ends++;
+                    }
+                }
+                assertEquals(deep * 3, begins);
+                assertEquals(begins, ends);
+            });
+        }
+    }
+
+    @DisplayName("ContextTest")
+    @Test
+    void contextTest() {
+        assertSame(TYPE_1_2, Context.SUB1.getType(0x80));
+        assertSame(TYPE_2_2, Context.SUB2.getType(new EBMLCode(0x80)));
+        assertSame(TYPE_2_1, Context.SUB1.getType(0x8B));
+        assertNull(Context.ROOT.getType(0x80));
+        assertTrue(Context.SUB1.contains(TYPE_2_1));
+        assertFalse(Context.SUB1.contains(TYPE_2_2));
+        assertFalse(Context.ROOT.contains(TYPE_1_2));
+        assertFalse(Context.ROOT.contains(null));
+        assertTrue(Context.SUB1.is(Context.SUB1));
+        assertTrue(Context.SUB1.is(Context.ROOT));
+        assertFalse(Context.ROOT.is(Context.SUB1));
+        assertFalse(Context.ROOT.is(null));
+        assertThrows(IllegalArgumentException.class, () -> EBMLContext.builder().add(TYPE_1_2, TYPE_2_2).build());
+        // other parent contexts are asked for codes not registered in the context
+        EBMLType.Context foreign = new EBMLType.Context() {
+
+            @Override
+            public EBMLType getType(EBMLCode code) {
+                return Context.SUB2.getType(code);
+            }
+
+            @Override
+            public boolean contains(EBMLType type) {
+                return Context.SUB2.contains(type);
+            }
+
+            @Override
+            public boolean is(EBMLType.Context context) {
+                return this == context;
+            }
+
+        };
+        EBMLContext context = EBMLContext.builder(EBMLContext.builder(foreign).add(TYPE_1_2).build()).build();
+        assertSame(TYPE_1_2, context.getType(0x80));
+        assertSame(TYPE_2_1, context.getType(0x8B));
+        assertTrue(context.contains(TYPE_1_2));
+        assertTrue(context.contains(TYPE_2_1));
+        assertFalse(context.contains(TYPE_2_2));
+        assertTrue(context.is(foreign));
+    }
+
 }
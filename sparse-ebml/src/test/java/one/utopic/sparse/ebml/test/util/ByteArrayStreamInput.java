@@ -25,7 +25,7 @@ import one.utopic.abio.api.input.Input;
 
 public class ByteArrayStreamInput implements Input {
 
-    private final InputStream is;
+    protected final InputStream is;
 
     public ByteArrayStreamInput(InputStream is) {
         this.is = is;
@@ -22,9 +22,9 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
 
-import one.utopic.abio.api.output.Output;;
+import one.utopic.sparse.ebml.io.BulkOutput;
 
-public class ByteArrayStreamOutput implements Output {
+public class ByteArrayStreamOutput implements BulkOutput {
 
 	private final OutputStream bos;
 
@@ -45,4 +45,9 @@ public class ByteArrayStreamOutput implements Output {
 		bos.write(b);
 	}
 
+	@Override
+	public void writeBytes(byte[] buf, int off, int len) throws IOException {
+		bos.write(buf, off, len);
+	}
+
 }
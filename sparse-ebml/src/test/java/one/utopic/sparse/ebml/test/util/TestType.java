@@ -19,75 +19,36 @@
 package one.utopic.sparse.ebml.test.util;
 
 import one.utopic.sparse.ebml.EBMLCode;
+import one.utopic.sparse.ebml.EBMLContext;
 import one.utopic.sparse.ebml.EBMLType;
 
-import static one.utopic.sparse.ebml.test.util.TestType.Context.*;
-
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
 
 public enum TestType implements EBMLType {
 
-    TYPE_1_1(0x8A, SUB1, ROOT), //
-    TYPE_1_2(0x80, SUB1), //
-    TYPE_2_1(0x8B, SUB2, ROOT), //
-    TYPE_2_2(0x80, SUB2), //
+    TYPE_1_1(0x8A), //
+    TYPE_1_2(0x80), //
+    TYPE_2_1(0x8B), //
+    TYPE_2_2(0x80), //
 
     ;
 
-    public static enum Context implements EBMLType.Context {
-        ROOT, //
-        SUB1(ROOT), //
-        SUB2(ROOT), //
-
-        ;
+    public static final class Context {
 
-        private final Map<EBMLCode, EBMLType> typeMap = new HashMap<>();
-        private final Context parentContext;
+        public static final EBMLContext ROOT = EBMLContext.builder().name("ROOT").add(TYPE_1_1, TYPE_2_1).build();
+        public static final EBMLContext SUB1 = EBMLContext.builder(ROOT).name("SUB1").add(TYPE_1_1, TYPE_1_2).build();
+        public static final EBMLContext SUB2 = EBMLContext.builder(ROOT).name("SUB2").add(TYPE_2_1, TYPE_2_2).build();
 
         private Context() {
-            this(null);
-        }
-
-        private Context(Context parentContext) {
-            this.parentContext = parentContext;
-        }
-
-        @Override
-        public EBMLType getType(EBMLCode code) {
-            return this.typeMap.computeIfAbsent(code, c -> null == this.parentContext ? null : this.parentContext.typeMap.get(c));
-        }
-
-        private void register(TestType type) {
-            if (typeMap.putIfAbsent(type.getEBMLCode(), type) != null) {
-                throw new IllegalArgumentException("EventType is already registered for " + type.getEBMLCode());
-            }
-        }
-
-        @Override
-        public boolean contains(EBMLType type) {
-            return typeMap.containsValue(type) || (null != this.parentContext && this.parentContext.typeMap.containsValue(type));
-        }
-
-        @Override
-        public boolean is(EBMLType.Context context) {
-            return equals(context) || parentContext.is(context);
         }
 
     }
 
-    private final Context context;
     private final EBMLCode code;
 
-    private TestType(long code, Context context, Context... regContexts) {
-        this.context = context;
+    private TestType(long code) {
         try {
             this.code = new EBMLCode(code > 0xFF ? longToBytes(code) : new byte[] { (byte) (0xFF & code) });
-            context.register(this);
-            for (int i = 0; i < regContexts.length; i++) {
-                regContexts[i].register(this);
-            }
         } catch (Throwable e) {
             throw new TypeInitializationException(this, e);
         }
@@ -99,8 +60,14 @@ public enum TestType implements EBMLType {
     }
 
     @Override
-    public Context getContext() {
-        return context;
+    public EBMLType.Context getContext() {
+        switch (this) {
+        case TYPE_1_1:
+        case TYPE_1_2:
+            return Context.SUB1;
+        default:
+            return Context.SUB2;
+        }
     }
 
     private static byte[] longToBytes(long value) {
@@ -20,6 +20,7 @@ package one.utopic.sparse.ebml.test.util;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.function.Consumer;
 
 import one.utopic.sparse.ebml.EBMLReader;
@@ -40,8 +41,27 @@ public final class TestUtil {
     }
 
     public static void decode(byte[] data, Context context, Consumer<EBMLReader> r) {
+        decode(data, context, true, r);
+    }
+
+    /**
+     * @param bulk
+     *            whether input supports block reads, otherwise it is read byte
+     *            by byte
+     */
+    public static void decode(byte[] data, Context context, boolean bulk, Consumer<EBMLReader> r) {
         try (ByteArrayInputStream bais = new ByteArrayInputStream(data)) {
-            r.accept(new EBMLReader(new ByteArrayStreamInput(bais), context));
+            r.accept(new EBMLReader(bulk ? new BulkByteArrayStreamInput(bais) : new ByteArrayStreamInput(bais), context));
+        } catch (AssertionError e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public static void decode(ByteBuffer data, Context context, Consumer<EBMLReader> r) {
+        try {
+            r.accept(new EBMLReader(data, context));
         } catch (AssertionError e) {
             throw e;
         } catch (Throwable e) {